@@ -0,0 +1,254 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// A thread pool that picks its own size between minThreads and maxThreads.
+// It measures how long tasks wait in the queue and how much of their run time
+// is spent blocked (sleeping, waiting for I/O) instead of using the CPU:
+// - tasks wait too long and the CPUs are not busy -> add threads
+// - the CPUs are busy, or threads are idle         -> remove threads
+// The number of threads that keeps every core busy is cores / (1 - blocking ratio).
+// Unlike a plain ThreadPoolExecutor, a full queue doesn't start extra threads:
+// execute() makes the caller wait for a free place (back-pressure) and rejects
+// the task only after offerTimeoutMillis.
+public class AdaptiveThreadPool extends ThreadPoolExecutor {
+    private final int minThreads;
+    private final int maxThreads;
+    private final long targetWaitNanos;
+    private final long offerTimeoutMillis;
+    private final ScheduledExecutorService controller;
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final ThreadLocal<long[]> started = ThreadLocal.withInitial(() -> new long[2]);
+
+    private final LatencyHistogram waitTimes = new LatencyHistogram();
+    private final LatencyHistogram execTimes = new LatencyHistogram();
+    private final LongAdder rejections = new LongAdder();
+
+    // totals since the last resize
+    private final LongAdder intervalTasks = new LongAdder();
+    private final LongAdder intervalWait = new LongAdder();
+    private final LongAdder intervalWall = new LongAdder();
+    private final LongAdder intervalCpu = new LongAdder();
+    private volatile double blockingRatio;
+    private long lastResize = System.nanoTime();
+
+    private AdaptiveThreadPool(int minThreads, int maxThreads, int queueCapacity, long targetWaitMillis, long offerTimeoutMillis) {
+        // core == maximum at all times; resize() moves both
+        super(minThreads, minThreads, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                (task, pool) -> ((AdaptiveThreadPool) pool).saturated(task));
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+        this.targetWaitNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+
+        controller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-controller");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // The controller is started only once the pool is fully constructed.
+    public static AdaptiveThreadPool create(int minThreads, int maxThreads, int queueCapacity, long targetWaitMillis, long offerTimeoutMillis) {
+        AdaptiveThreadPool pool = new AdaptiveThreadPool(minThreads, maxThreads, queueCapacity, targetWaitMillis, offerTimeoutMillis);
+        pool.controller.scheduleWithFixedDelay(pool::resize, 100, 100, TimeUnit.MILLISECONDS);
+        return pool;
+    }
+
+    public void execute(Runnable command) {
+        super.execute(new Timed(command));
+    }
+
+    public int activeThreads() {
+        return getActiveCount();
+    }
+
+    public int queueDepth() {
+        return getQueue().size();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    // time between execute() and the start of the task, in nanoseconds
+    public LatencyHistogram waitTimes() {
+        return waitTimes;
+    }
+
+    public LatencyHistogram execTimes() {
+        return execTimes;
+    }
+
+    public double blockingRatio() {
+        return blockingRatio;
+    }
+
+    public String metrics() {
+        return String.format("threads=%d/%d active=%d queue=%d blocking=%.2f completed=%d rejected=%d",
+                getPoolSize(), getCorePoolSize(), activeThreads(), queueDepth(), blockingRatio,
+                getCompletedTaskCount(), rejections());
+    }
+
+    public void shutdown() {
+        controller.shutdownNow();
+        super.shutdown();
+    }
+
+    public List<Runnable> shutdownNow() {
+        controller.shutdownNow();
+        return super.shutdownNow();
+    }
+
+    protected void beforeExecute(Thread t, Runnable r) {
+        long now = System.nanoTime();
+        long wait = now - ((Timed) r).enqueued;
+        waitTimes.record(wait);
+        intervalWait.add(wait);
+        intervalTasks.increment();
+
+        long[] s = started.get();
+        s[0] = now;
+        s[1] = threadBean.getCurrentThreadCpuTime();
+    }
+
+    protected void afterExecute(Runnable r, Throwable t) {
+        long[] s = started.get();
+        long wall = System.nanoTime() - s[0];
+        long cpu = threadBean.getCurrentThreadCpuTime() - s[1];
+        execTimes.record(wall);
+        intervalWall.add(wall);
+        intervalCpu.add(Math.min(cpu, wall));
+    }
+
+    // The queue is full and every thread is busy: wait for a free place in the queue.
+    private void saturated(Runnable task) {
+        if (!isShutdown()) {
+            try {
+                if (getQueue().offer(task, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    // shutdown() may have come while we waited
+                    if (!isShutdown() || !getQueue().remove(task))
+                        return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rejections.increment();
+        throw new RejectedExecutionException("Pool is saturated: " + metrics());
+    }
+
+    private void resize() {
+        long tasks = intervalTasks.sumThenReset();
+        long wait = intervalWait.sumThenReset();
+        long wall = intervalWall.sumThenReset();
+        long cpu = intervalCpu.sumThenReset();
+        long now = System.nanoTime();
+        long elapsed = now - lastResize;
+        lastResize = now;
+        if (wall > 0)
+            blockingRatio = 1 - (double) cpu / wall;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        // share of all cores used by the tasks; a thread waiting for a CPU also looks "blocked",
+        // so when the CPUs are full the blocking ratio can't be trusted
+        double cpuBusy = (double) cpu / (elapsed * cores);
+        int wanted = (int) Math.ceil(cores / Math.max(0.05, 1 - blockingRatio));
+        long averageWait = tasks == 0 ? 0 : wait / tasks;
+        int size = getCorePoolSize();
+        int next = size;
+
+        if (cpuBusy > 0.9) {
+            // more threads would only take turns on the same cores
+            if (size > cores)
+                next = Math.max(cores, size - Math.max(1, size / 4));
+        } else if (averageWait > targetWaitNanos && queueDepth() > 0) {
+            // behind while the CPUs have room: the threads are blocked, add some
+            next = Math.max(wanted, size + Math.max(1, size / 4));
+        } else if (averageWait < targetWaitNanos / 2 && activeThreads() < size) {
+            // keeping up with threads to spare: give one back at a time
+            next = size - 1;
+        }
+        next = Math.max(minThreads, Math.min(maxThreads, next));
+        if (next > size) {
+            setMaximumPoolSize(next);
+            setCorePoolSize(next);
+        } else if (next < size) {
+            setCorePoolSize(next);
+            setMaximumPoolSize(next);
+        }
+    }
+
+    private static class Timed implements Runnable {
+        final Runnable task;
+        final long enqueued = System.nanoTime();
+
+        Timed(Runnable task) {
+            this.task = task;
+        }
+
+        public void run() {
+            task.run();
+        }
+    }
+
+    // java AdaptiveThreadPool
+    // Blocking tasks (like WorkerThread, but 20 ms), then CPU tasks, submitted as fast as the
+    // pool accepts them. The pool grows for the blocking phase and shrinks for the CPU phase.
+    public static void main(String[] args) throws InterruptedException {
+        AdaptiveThreadPool pool = AdaptiveThreadPool.create(2, 200, 1000, 5, 1000);
+        Thread reporter = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                System.out.println(pool.metrics());
+            }
+        });
+        reporter.setDaemon(true);
+        reporter.start();
+
+        System.out.println("Blocking tasks");
+        submitFor(pool, 3000, () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        System.out.println("CPU tasks");
+        submitFor(pool, 3000, () -> {
+            long end = System.nanoTime() + 1_000_000;
+            while (System.nanoTime() < end) {
+            }
+        });
+
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        reporter.interrupt();
+        System.out.println(pool.metrics());
+        System.out.println("Wait: " + pool.waitTimes().summary(1000, "us"));
+        System.out.println("Exec: " + pool.execTimes().summary(1000, "us"));
+    }
+
+    static void submitFor(AdaptiveThreadPool pool, long millis, Runnable task) {
+        long end = System.currentTimeMillis() + millis;
+        while (System.currentTimeMillis() < end) {
+            try {
+                pool.execute(task);
+            } catch (RejectedExecutionException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Reads and writes at given positions of a file without blocking the caller:
+// every call returns a CompletableFuture right away, and AsynchronousFileChannel
+// completes it when the I/O is done. At most `maxOutstanding` operations are given
+// to the channel at once; the others wait in a queue (the caller still doesn't
+// block), so a burst of requests can't flood the disk or the channel's thread pool.
+public class AsyncFileIO implements Closeable {
+    private final AsynchronousFileChannel channel;
+    private final int maxOutstanding;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Queue<Operation> waiting = new ConcurrentLinkedQueue<>();
+
+    public AsyncFileIO(Path path, int maxOutstanding, OpenOption... options) throws IOException {
+        this.channel = AsynchronousFileChannel.open(path, options.length > 0 ? options : new OpenOption[] { StandardOpenOption.READ });
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    // Completes with `length` bytes from `position` (fewer at the end of the file), flipped for reading.
+    public CompletableFuture<ByteBuffer> read(long position, int length) {
+        return read(position, ByteBuffer.allocate(length));
+    }
+
+    public CompletableFuture<ByteBuffer> read(long position, ByteBuffer dst) {
+        CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+        submit(new Operation(result, () -> readMore(position, dst, result)));
+        return result;
+    }
+
+    // Completes with the number of bytes written, which is all of src.
+    public CompletableFuture<Integer> write(long position, ByteBuffer src) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        int length = src.remaining();
+        submit(new Operation(result, () -> writeMore(position, src, length, result)));
+        return result;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    // A read can return fewer bytes than asked, so continue until the buffer is full or the file ends.
+    private void readMore(long position, ByteBuffer dst, CompletableFuture<ByteBuffer> result) {
+        channel.read(dst, position, null, new CompletionHandler<Integer, Void>() {
+            public void completed(Integer n, Void attachment) {
+                if (n > 0 && dst.hasRemaining()) {
+                    readMore(position + n, dst, result);
+                    return;
+                }
+                // complete before starting queued operations, which run on this thread
+                result.complete(dst.flip());
+                finished();
+            }
+
+            public void failed(Throwable e, Void attachment) {
+                result.completeExceptionally(e);
+                finished();
+            }
+        });
+    }
+
+    private void writeMore(long position, ByteBuffer src, int length, CompletableFuture<Integer> result) {
+        channel.write(src, position, null, new CompletionHandler<Integer, Void>() {
+            public void completed(Integer n, Void attachment) {
+                if (src.hasRemaining()) {
+                    writeMore(position + n, src, length, result);
+                    return;
+                }
+                result.complete(length);
+                finished();
+            }
+
+            public void failed(Throwable e, Void attachment) {
+                result.completeExceptionally(e);
+                finished();
+            }
+        });
+    }
+
+    private void submit(Operation operation) {
+        waiting.add(operation);
+        startWaiting();
+    }
+
+    private void finished() {
+        outstanding.decrementAndGet();
+        startWaiting();
+    }
+
+    // Takes a slot before taking an operation, so the limit holds with many threads.
+    private void startWaiting() {
+        while (!waiting.isEmpty()) {
+            int n = outstanding.get();
+            if (n >= maxOutstanding)
+                return;
+            if (!outstanding.compareAndSet(n, n + 1))
+                continue;
+            Operation operation = waiting.poll();
+            if (operation == null) {
+                outstanding.decrementAndGet();
+                continue;
+            }
+            try {
+                operation.start.run();
+            } catch (RuntimeException e) {
+                // e.g. NonWritableChannelException: fail this operation only, and go on with the others
+                outstanding.decrementAndGet();
+                operation.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static class Operation {
+        final CompletableFuture<?> result;
+        final Runnable start;
+
+        Operation(CompletableFuture<?> result, Runnable start) {
+            this.result = result;
+            this.start = start;
+        }
+    }
+
+    // java AsyncFileIO [reads] [maxOutstanding]
+    // Random 4 KB reads one after the other with RandomAccessFile (as in RandomAccessFileDemo),
+    // then all issued at once from one thread with AsyncFileIO.
+    public static void main(String[] args) throws Exception {
+        int reads = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int maxOutstanding = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int blockSize = 4096;
+        long fileSize = 256L << 20;
+
+        Path path = Files.createTempFile("async", ".dat");
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+                raf.setLength(fileSize);
+            }
+            long[] positions = new long[reads];
+            Random random = new Random(42);
+            for (int i = 0; i < reads; i++)
+                positions[i] = random.nextInt((int) (fileSize / blockSize)) * (long) blockSize;
+
+            long start = System.nanoTime();
+            byte[] block = new byte[blockSize];
+            try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "r")) {
+                for (long position : positions) {
+                    raf.seek(position);
+                    raf.readFully(block);
+                }
+            }
+            System.out.printf("RandomAccessFile: %d reads in %d ms%n", reads, (System.nanoTime() - start) / 1_000_000);
+
+            start = System.nanoTime();
+            try (AsyncFileIO io = new AsyncFileIO(path, maxOutstanding)) {
+                List<CompletableFuture<ByteBuffer>> results = new ArrayList<>(reads);
+                for (long position : positions)
+                    results.add(io.read(position, blockSize));
+                // the calling thread was free until here; now wait for everything
+                CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+            }
+            System.out.printf("AsyncFileIO:      %d reads in %d ms, up to %d at once%n", reads,
+                    (System.nanoTime() - start) / 1_000_000, maxOutstanding);
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// A logger that never holds a lock. Many threads put whole messages into a ring
+// buffer; one consumer thread takes them out in order and writes them in batches.
+// A producer claims a sequence number by incrementing `claimed`, stores its message
+// in slot (sequence % capacity), then publishes the slot by writing the sequence
+// into `published`. The consumer reads slots in sequence order and stops at the
+// first one that is not published yet, so every message is written whole and
+// messages from one thread keep their order.
+public class AsyncLogger implements Closeable {
+	// added to `claimed` when the consumer exits after close(), so every later
+	// sequence number is at least this large and producers know nobody will take it
+	private static final long DRAINED = 1L << 62;
+
+	private final String[] messages;
+	private final AtomicLongArray published;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong();
+	private volatile long consumed;
+	private volatile boolean running = true;
+	private volatile boolean sleeping;
+	// the consumer has written everything and exited after close()
+	private volatile boolean drained;
+	// the consumer has stopped because writing failed; later messages are lost
+	private volatile boolean stopped;
+	private final Writer out;
+	private final Thread consumer = new Thread(this::consume, "async-logger");
+	private final AtomicLong dropped = new AtomicLong();
+	private volatile long written;
+	private volatile long batches;
+
+	public AsyncLogger(OutputStream out, int capacity) {
+		if (Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+		messages = new String[capacity];
+		published = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+			published.set(i, -1);
+		mask = capacity - 1;
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	// Waits only when the buffer is full, until the consumer frees a slot.
+	// Throws IllegalStateException after close(), or once writing has failed.
+	public void log(String message) {
+		Objects.requireNonNull(message);
+		if (!running || drained || stopped)
+			throw new IllegalStateException("AsyncLogger is closed");
+		long seq = claimed.getAndIncrement();
+		if (seq >= DRAINED)
+			throw new IllegalStateException("AsyncLogger is closed");
+		while (seq - messages.length >= consumed) {
+			if (stopped)
+				throw new IllegalStateException("AsyncLogger is closed");
+			wakeConsumer();
+			Thread.yield();
+		}
+		if (!publish(seq, message))
+			dropped.incrementAndGet();
+	}
+
+	// Never waits: drops the message and returns false when the buffer is full,
+	// or when the logger is closed.
+	public boolean tryLog(String message) {
+		Objects.requireNonNull(message);
+		long seq;
+		do {
+			seq = claimed.get();
+			if (!running || seq >= DRAINED || stopped || seq - messages.length >= consumed) {
+				dropped.incrementAndGet();
+				return false;
+			}
+		} while (!claimed.compareAndSet(seq, seq + 1));
+		if (!publish(seq, message)) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	public long written() {
+		return written;
+	}
+
+	public long batches() {
+		return batches;
+	}
+
+	public long dropped() {
+		return dropped.get();
+	}
+
+	// Writes everything logged before close() and stops the consumer.
+	public void close() throws IOException {
+		running = false;
+		LockSupport.unpark(consumer);
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.flush();
+	}
+
+	// Returns false if writing failed before the consumer could take the message.
+	private boolean publish(long seq, String message) {
+		int slot = (int) seq & mask;
+		messages[slot] = message;
+		// the message is visible to the consumer before the sequence that publishes it
+		published.lazySet(slot, seq);
+		wakeConsumer();
+		return !stopped || consumed > seq;
+	}
+
+	private void wakeConsumer() {
+		if (sleeping)
+			LockSupport.unpark(consumer);
+	}
+
+	private void consume() {
+		long next = 0;
+		int spins = 0;
+		try {
+			while (true) {
+				int n = 0;
+				int slot = (int) next & mask;
+				while (n < 4096 && published.get(slot) == next) {
+					out.write(messages[slot]);
+					out.write('\n');
+					messages[slot] = null;
+					next++;
+					n++;
+					slot = (int) next & mask;
+				}
+				if (n > 0) {
+					spins = 0;
+					// free the slots, then write the whole batch with one flush
+					consumed = next;
+					out.flush();
+					written += n;
+					batches++;
+					continue;
+				}
+				// claimed but not published yet: the producer is between the two steps.
+				// Spin a little, then yield in case that producer is waiting for a CPU.
+				if (claimed.get() > next) {
+					if (++spins < 100)
+						Thread.onSpinWait();
+					else
+						Thread.yield();
+					continue;
+				}
+				if (!running) {
+					// exit only if no producer has claimed a sequence number meanwhile;
+					// once this succeeds, every claim gets one at or above DRAINED
+					if (claimed.compareAndSet(next, next + DRAINED)) {
+						drained = true;
+						return;
+					}
+					continue;
+				}
+				sleeping = true;
+				// check again, a producer may have published before it saw `sleeping`;
+				// a wake-up that is still missed costs at most the 1 ms timeout
+				if (published.get(slot) != next && running)
+					LockSupport.parkNanos(1_000_000);
+				sleeping = false;
+			}
+		} catch (IOException | RuntimeException e) {
+			stopped = true;
+			System.err.println("AsyncLogger stopped: " + e.getMessage());
+		}
+	}
+
+	// java AsyncLogger [threads] [messages per thread]
+	public static void main(String[] args) throws Exception {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+
+		// The PrintThread example without a lock: each thread logs one whole message, so the
+		// brackets can't mix, and the sleep no longer makes the other threads wait.
+		long start = System.nanoTime();
+		try (AsyncLogger logger = new AsyncLogger(System.out, 1024)) {
+			Thread[] printers = new Thread[3];
+			String[] words = { "Hello", "Synchronized", "World" };
+			for (int i = 0; i < printers.length; i++) {
+				String msg = words[i];
+				printers[i] = new Thread(() -> {
+					try {
+						Thread.sleep(1000);
+					}
+					catch (InterruptedException e) {
+						logger.log("Interrupted");
+					}
+					logger.log("[" + msg + "]");
+				});
+				printers[i].start();
+			}
+			for (Thread t : printers)
+				t.join();
+		}
+		System.out.printf("3 messages in %d ms%n%n", (System.nanoTime() - start) / 1_000_000);
+
+		// Many threads logging as fast as they can, to a stream that discards everything,
+		// so only the cost of the logging itself is measured.
+		PrintStream sink = new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream()));
+		long time = run(threads, count, sink::println);
+		System.out.printf("synchronized println: %,d messages from %d threads in %d ms%n",
+				(long) threads * count, threads, time / 1_000_000);
+
+		AsyncLogger logger = new AsyncLogger(OutputStream.nullOutputStream(), 64 * 1024);
+		time = run(threads, count, logger::log);
+		long logged = System.nanoTime();
+		logger.close();
+		System.out.printf("AsyncLogger:          %,d messages from %d threads in %d ms (+%d ms to drain), %.0f messages per batch%n",
+				logger.written(), threads, time / 1_000_000, (System.nanoTime() - logged) / 1_000_000,
+				(double) logger.written() / logger.batches());
+	}
+
+	interface Log {
+		void log(String message);
+	}
+
+	static long run(int threads, int count, Log log) throws InterruptedException {
+		Thread[] producers = new Thread[threads];
+		long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			String name = "thread-" + i;
+			producers[i] = new Thread(() -> {
+				for (int j = 0; j < count; j++)
+					log.log(name + " message " + j);
+			});
+			producers[i].start();
+		}
+		for (Thread t : producers)
+			t.join();
+		return System.nanoTime() - start;
+	}
+}
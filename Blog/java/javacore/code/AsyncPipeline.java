@@ -0,0 +1,183 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+// A chain of asynchronous steps over CompletableFuture. Every step runs on the
+// executor given at the start, and nothing waits: each step is started by the
+// completion of the one before. Cancelling a pipeline cancels the steps it depends
+// on as well, and interrupts the Callables that are still running.
+public final class AsyncPipeline<T> {
+    private final CompletableFuture<T> future;
+    private final Executor executor;
+    // cancels the steps this one depends on
+    private final Runnable cancelUpstream;
+
+    private AsyncPipeline(CompletableFuture<T> future, Executor executor, Runnable cancelUpstream) {
+        this.future = future;
+        this.executor = executor;
+        this.cancelUpstream = cancelUpstream;
+    }
+
+    // Runs the callable on the executor; an exception thrown by it fails the pipeline.
+    public static <T> AsyncPipeline<T> supply(Callable<T> task, Executor executor) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        FutureTask<T> run = new FutureTask<>(task) {
+            protected void done() {
+                try {
+                    future.complete(get());
+                } catch (CancellationException e) {
+                    future.cancel(false);
+                } catch (Exception e) {
+                    future.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+                }
+            }
+        };
+        executor.execute(run);
+        return new AsyncPipeline<>(future, executor, () -> run.cancel(true));
+    }
+
+    public static <T> AsyncPipeline<T> completed(T value, Executor executor) {
+        return new AsyncPipeline<>(CompletableFuture.completedFuture(value), executor, () -> {
+        });
+    }
+
+    // Fan-in: the results of all pipelines, in the same order. Fails as soon as one fails.
+    public static <T> AsyncPipeline<List<T>> allOf(List<AsyncPipeline<T>> pipelines, Executor executor) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[pipelines.size()];
+        for (int i = 0; i < futures.length; i++)
+            futures[i] = pipelines.get(i).future;
+
+        CompletableFuture<List<T>> all = new CompletableFuture<>();
+        CompletableFuture.allOf(futures).whenComplete((v, e) -> {
+            if (e != null) {
+                all.completeExceptionally(unwrap(e));
+                return;
+            }
+            List<T> results = new ArrayList<>(pipelines.size());
+            for (AsyncPipeline<T> p : pipelines)
+                results.add(p.future.join());
+            all.complete(results);
+        });
+        // don't keep the others running once one has failed
+        for (AsyncPipeline<T> p : pipelines)
+            p.future.whenComplete((v, e) -> {
+                if (e != null) {
+                    all.completeExceptionally(unwrap(e));
+                    pipelines.forEach(AsyncPipeline::cancel);
+                }
+            });
+        return new AsyncPipeline<>(all, executor, () -> pipelines.forEach(AsyncPipeline::cancel));
+    }
+
+    // The first pipeline to succeed wins and the others are cancelled. Fails only if all fail.
+    public static <T> AsyncPipeline<T> anyOf(List<AsyncPipeline<T>> pipelines, Executor executor) {
+        CompletableFuture<T> any = new CompletableFuture<>();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[pipelines.size()];
+        for (int i = 0; i < futures.length; i++) {
+            futures[i] = pipelines.get(i).future.whenComplete((v, e) -> {
+                if (e == null && any.complete(v))
+                    pipelines.forEach(AsyncPipeline::cancel);
+            });
+        }
+        CompletableFuture.allOf(futures).whenComplete((v, e) -> {
+            if (e != null)
+                any.completeExceptionally(unwrap(e));
+        });
+        return new AsyncPipeline<>(any, executor, () -> pipelines.forEach(AsyncPipeline::cancel));
+    }
+
+    public <R> AsyncPipeline<R> map(Function<? super T, ? extends R> fn) {
+        return new AsyncPipeline<>(future.thenApplyAsync(fn, executor), executor, this::cancel);
+    }
+
+    // The next step is itself asynchronous, e.g. another Callable.
+    public <R> AsyncPipeline<R> flatMap(Function<? super T, AsyncPipeline<R>> fn) {
+        // kept so that cancel() also reaches the inner pipeline once it has started
+        AtomicReference<AsyncPipeline<R>> inner = new AtomicReference<>();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<R> composed = future.thenComposeAsync(v -> {
+            AsyncPipeline<R> next = fn.apply(v);
+            inner.set(next);
+            // cancel() may have run while fn was starting the inner pipeline
+            if (cancelled.get())
+                next.cancel();
+            return next.future;
+        }, executor);
+        return new AsyncPipeline<>(composed, executor, () -> {
+            cancelled.set(true);
+            cancel();
+            AsyncPipeline<R> next = inner.get();
+            if (next != null)
+                next.cancel();
+        });
+    }
+
+    public <R> AsyncPipeline<R> then(Callable<R> next) {
+        return flatMap(v -> supply(next, executor));
+    }
+
+    // Fan-out: splits the value into Callables that run in parallel, then gathers their results.
+    public <R> AsyncPipeline<List<R>> fanOut(Function<? super T, ? extends Collection<? extends Callable<R>>> split) {
+        return flatMap(v -> {
+            List<AsyncPipeline<R>> parts = new ArrayList<>();
+            for (Callable<R> task : split.apply(v))
+                parts.add(supply(task, executor));
+            return allOf(parts, executor);
+        });
+    }
+
+    // Fails with TimeoutException, and cancels the steps before, if not done in time.
+    public AsyncPipeline<T> timeout(long timeout, TimeUnit unit) {
+        CompletableFuture<T> limited = future.copy().orTimeout(timeout, unit);
+        limited.whenComplete((v, e) -> {
+            if (e != null)
+                cancel();
+        });
+        return new AsyncPipeline<>(limited, executor, this::cancel);
+    }
+
+    // Completes with `fallback` if not done in time.
+    public AsyncPipeline<T> timeout(long timeout, TimeUnit unit, T fallback) {
+        CompletableFuture<T> limited = future.copy().completeOnTimeout(fallback, timeout, unit);
+        return new AsyncPipeline<>(limited, executor, this::cancel);
+    }
+
+    public AsyncPipeline<T> recover(Function<Throwable, ? extends T> fn) {
+        return new AsyncPipeline<>(future.exceptionally(e -> fn.apply(unwrap(e))), executor, this::cancel);
+    }
+
+    // Called with the result, or with the exception, when the pipeline is done.
+    public AsyncPipeline<T> onComplete(BiConsumer<? super T, ? super Throwable> callback) {
+        return new AsyncPipeline<>(future.whenCompleteAsync((v, e) -> callback.accept(v, e == null ? null : unwrap(e)), executor),
+                executor, this::cancel);
+    }
+
+    public boolean cancel() {
+        boolean cancelled = future.cancel(false);
+        cancelUpstream.run();
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return future.isDone();
+    }
+
+    public CompletableFuture<T> toFuture() {
+        return future;
+    }
+
+    static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+// Frames are a 4-byte big-endian length followed by that many bytes of UTF-8.
+// The reader never scans for a delimiter, and both directions reuse their buffers.
+public class BinaryCodec implements MessageCodec {
+	private final InputStream is;
+	private final OutputStream os;
+	private ByteBuffer in = ByteBuffer.allocate(8 * 1024);
+	private ByteBuffer out = ByteBuffer.allocate(64 * 1024);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	public BinaryCodec(InputStream is, OutputStream os) {
+		this.is = new BufferedInputStream(is, 64 * 1024);
+		this.os = os;
+	}
+
+	public String read() throws IOException {
+		if (!readFully(4))
+			return null;
+		int length = in.getInt(0);
+		if (length < 0 || length > MAX_MESSAGE)
+			throw new IOException("Bad frame length: " + length);
+		if (length > in.capacity())
+			in = ByteBuffer.allocate(Math.max(length, in.capacity() * 2));
+		if (!readFully(length))
+			throw new EOFException("Connection closed inside a frame");
+		return new String(in.array(), 0, length, StandardCharsets.UTF_8);
+	}
+
+	private boolean readFully(int length) throws IOException {
+		int done = 0;
+		while (done < length) {
+			int n = is.read(in.array(), done, length - done);
+			if (n < 0) {
+				if (done == 0)
+					return false;
+				throw new EOFException("Connection closed inside a frame");
+			}
+			done += n;
+		}
+		return true;
+	}
+
+	public void write(String message) throws IOException {
+		// UTF-8 takes at least one byte per char, so this is too long whatever the encoding
+		if (message.length() > MAX_MESSAGE)
+			throw new IOException("Message too long: " + message.length() + " chars");
+		// at most 3 bytes per UTF-16 char
+		int worstCase = 4 + message.length() * 3;
+		if (out.remaining() < worstCase) {
+			flush();
+			if (out.capacity() < worstCase)
+				out = ByteBuffer.allocate(worstCase);
+		}
+
+		// a failed message is taken out again, so no half frame is ever flushed
+		int start = out.position();
+		out.position(start + 4);
+		encoder.reset();
+		CoderResult result = encoder.encode(CharBuffer.wrap(message), out, true);
+		encoder.flush(out);
+		int length = out.position() - start - 4;
+		if (result.isError() || length > MAX_MESSAGE) {
+			out.position(start);
+			if (result.isError())
+				result.throwException();
+			throw new IOException("Message too long: " + length + " bytes");
+		}
+		out.putInt(start, length);
+	}
+
+	public void flush() throws IOException {
+		if (out.position() > 0) {
+			os.write(out.array(), 0, out.position());
+			out.clear();
+		}
+		os.flush();
+	}
+}
@@ -0,0 +1,97 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Compresses one block at a time. Blocks don't depend on each other, so they can be
+// compressed on different threads and decompressed in any order. The id is stored in
+// the file header, so the reader finds the codec the writer used.
+public interface BlockCodec {
+    byte id();
+
+    byte[] compress(byte[] src, int offset, int length);
+
+    // `length` is the size before compression, stored next to each block
+    byte[] decompress(byte[] src, int offset, int compressedLength, int length) throws IOException;
+
+    static BlockCodec forId(byte id) throws IOException {
+        switch (id) {
+            case 0:
+                return STORE;
+            case 1:
+                return deflate(Deflater.DEFAULT_COMPRESSION);
+            default:
+                throw new IOException("Unknown codec: " + id);
+        }
+    }
+
+    static BlockCodec deflate(int level) {
+        return new DeflateCodec(level);
+    }
+
+    // no compression, for data that is already compressed
+    BlockCodec STORE = new BlockCodec() {
+        public byte id() {
+            return 0;
+        }
+
+        public byte[] compress(byte[] src, int offset, int length) {
+            return Arrays.copyOfRange(src, offset, offset + length);
+        }
+
+        public byte[] decompress(byte[] src, int offset, int compressedLength, int length) {
+            return Arrays.copyOfRange(src, offset, offset + length);
+        }
+    };
+
+    // Raw deflate (no zlib header, the block already has a CRC). Deflater and Inflater hold
+    // native memory, so each thread keeps one and resets it instead of creating one per block.
+    class DeflateCodec implements BlockCodec {
+        private final ThreadLocal<Deflater> deflater;
+        private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(() -> new Inflater(true));
+
+        DeflateCodec(int level) {
+            deflater = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        }
+
+        public byte id() {
+            return 1;
+        }
+
+        public byte[] compress(byte[] src, int offset, int length) {
+            Deflater d = deflater.get();
+            d.reset();
+            d.setInput(src, offset, length);
+            d.finish();
+            // deflate can make incompressible data slightly larger
+            byte[] out = new byte[length + length / 1000 + 64];
+            int n = 0;
+            while (!d.finished()) {
+                if (n == out.length)
+                    out = Arrays.copyOf(out, out.length * 2);
+                n += d.deflate(out, n, out.length - n);
+            }
+            return Arrays.copyOf(out, n);
+        }
+
+        public byte[] decompress(byte[] src, int offset, int compressedLength, int length) throws IOException {
+            Inflater i = inflater.get();
+            i.reset();
+            i.setInput(src, offset, compressedLength);
+            byte[] out = new byte[length];
+            try {
+                int n = 0;
+                while (n < length) {
+                    int k = i.inflate(out, n, length - n);
+                    if (k == 0 && (i.finished() || i.needsInput()))
+                        throw new IOException("Block is shorter than " + length + " bytes");
+                    n += k;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt block", e);
+            }
+            return out;
+        }
+    }
+}
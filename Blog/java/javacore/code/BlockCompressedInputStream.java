@@ -0,0 +1,226 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Reads a file written by BlockCompressedOutputStream, one block at a time.
+// The index at the end of the file gives the position of every block, so seek()
+// decompresses only the block that holds the wanted byte.
+public class BlockCompressedInputStream extends InputStream {
+    private final FileChannel channel;
+    private final BlockCodec codec;
+    private final long[] dataOffsets;
+    private final long[] fileOffsets;
+    private final long length;
+    private byte[] compressed = new byte[0];
+    private byte[] block = new byte[0];
+    private int blockIndex = -1;
+    private int pos;
+    private int limit;
+
+    public BlockCompressedInputStream(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < BlockCompressedOutputStream.HEADER + BlockCompressedOutputStream.TRAILER)
+                throw new IOException("File is truncated: " + path);
+            ByteBuffer header = readFully(0, BlockCompressedOutputStream.HEADER);
+            if (header.getInt() != BlockCompressedOutputStream.MAGIC)
+                throw new IOException("Not a block compressed file: " + path);
+            codec = BlockCodec.forId(header.get());
+
+            long indexEnd = size - BlockCompressedOutputStream.TRAILER;
+            ByteBuffer trailer = readFully(indexEnd, BlockCompressedOutputStream.TRAILER);
+            long indexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            length = trailer.getLong();
+            if (trailer.getInt() != BlockCompressedOutputStream.MAGIC)
+                throw new IOException("File is truncated: " + path);
+            // check the index fits in the file before allocating anything for it
+            if (blocks < 0 || length < 0 || indexOffset < BlockCompressedOutputStream.HEADER
+                    || indexOffset + blocks * 16L != indexEnd)
+                throw new IOException("Bad index in " + path);
+
+            ByteBuffer index = readFully(indexOffset, blocks * 16);
+            dataOffsets = new long[blocks];
+            fileOffsets = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                dataOffsets[i] = index.getLong();
+                fileOffsets[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            // e.g. an unknown codec id
+            channel.close();
+            throw e;
+        }
+    }
+
+    // length of the uncompressed data
+    public long length() {
+        return length;
+    }
+
+    public long position() {
+        return blockIndex < 0 ? 0 : dataOffsets[blockIndex] + pos;
+    }
+
+    public void seek(long position) throws IOException {
+        if (position < 0 || position > length)
+            throw new IOException("Position out of range: " + position);
+        // last block that starts at or before position
+        int lo = 0, hi = dataOffsets.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (dataOffsets[mid] <= position)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        if (dataOffsets.length == 0)
+            return;
+        if (lo != blockIndex)
+            loadBlock(lo);
+        pos = (int) Math.min(position - dataOffsets[lo], limit);
+    }
+
+    public int read() throws IOException {
+        if (pos == limit && !nextBlock())
+            return -1;
+        return block[pos++] & 0xFF;
+    }
+
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (pos == limit && !nextBlock())
+            return -1;
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(block, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    public long skip(long n) throws IOException {
+        long from = position();
+        seek(Math.min(length, from + Math.max(0, n)));
+        return position() - from;
+    }
+
+    public int available() {
+        return limit - pos;
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean nextBlock() throws IOException {
+        // BlockCompressedOutputStream never writes an empty block, but the format allows
+        // one; skip it instead of taking it for the end of the stream
+        while (blockIndex + 1 < dataOffsets.length) {
+            loadBlock(blockIndex + 1);
+            if (limit > 0)
+                return true;
+        }
+        return false;
+    }
+
+    private void loadBlock(int i) throws IOException {
+        ByteBuffer header = readFully(fileOffsets[i], BlockCompressedOutputStream.BLOCK_HEADER);
+        int blockLength = header.getInt();
+        int compressedLength = header.getInt();
+        int crc = header.getInt();
+
+        if (compressed.length < compressedLength)
+            compressed = new byte[compressedLength];
+        ByteBuffer data = ByteBuffer.wrap(compressed, 0, compressedLength);
+        long position = fileOffsets[i] + BlockCompressedOutputStream.BLOCK_HEADER;
+        while (data.hasRemaining()) {
+            if (channel.read(data, position + data.position()) < 0)
+                throw new EOFException();
+        }
+        block = codec.decompress(compressed, 0, compressedLength, blockLength);
+
+        CRC32 check = new CRC32();
+        check.update(block, 0, blockLength);
+        if ((int) check.getValue() != crc)
+            throw new IOException("Bad CRC in block " + i);
+        blockIndex = i;
+        pos = 0;
+        limit = blockLength;
+    }
+
+    private ByteBuffer readFully(long position, int size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0)
+                throw new EOFException();
+        }
+        return buf.flip();
+    }
+
+    // java BlockCompressedInputStream [sizeMB] [threads]
+    // Writes the same text with BufferedOutputStream, raw and compressed, reads it back and seeks.
+    public static void main(String[] args) throws Exception {
+        int sizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        StringBuilder sb = new StringBuilder();
+        Random random = new Random(1);
+        while (sb.length() < 1 << 20)
+            sb.append("id=").append(random.nextInt(100_000)).append(";name=user").append(random.nextInt(1000))
+                    .append(";score=").append(random.nextInt(100)).append('\n');
+        byte[] chunk = sb.toString().getBytes();
+
+        Path raw = Files.createTempFile("raw", ".txt");
+        Path packed = Files.createTempFile("packed", ".blkz");
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            try (BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(raw.toFile()))) {
+                for (int i = 0; i < sizeMB; i++)
+                    bout.write(chunk);
+            }
+            System.out.printf("raw:        %4d MB on disk, written in %d ms%n",
+                    Files.size(raw) >> 20, (System.nanoTime() - start) / 1_000_000);
+
+            start = System.nanoTime();
+            try (BufferedOutputStream bout = new BufferedOutputStream(new BlockCompressedOutputStream(
+                    new FileOutputStream(packed.toFile()), BlockCodec.deflate(Deflater.BEST_SPEED), 256 * 1024, pool, 2 * threads))) {
+                for (int i = 0; i < sizeMB; i++)
+                    bout.write(chunk);
+            }
+            System.out.printf("compressed: %4d MB on disk, written in %d ms on %d thread(s)%n",
+                    Files.size(packed) >> 20, (System.nanoTime() - start) / 1_000_000, threads);
+
+            start = System.nanoTime();
+            long total = 0;
+            try (BufferedInputStream bin = new BufferedInputStream(new BlockCompressedInputStream(packed))) {
+                byte[] buf = new byte[64 * 1024];
+                for (int n; (n = bin.read(buf)) > 0; )
+                    total += n;
+            }
+            System.out.printf("read back %d MB in %d ms%n", total >> 20, (System.nanoTime() - start) / 1_000_000);
+
+            try (BlockCompressedInputStream in = new BlockCompressedInputStream(packed)) {
+                long middle = in.length() / 2 + 12345;
+                start = System.nanoTime();
+                in.seek(middle);
+                int b = in.read();
+                System.out.printf("byte at %d: '%c' (expected '%c') after seeking in %d us%n", middle, b,
+                        (char) chunk[(int) (middle % chunk.length)], (System.nanoTime() - start) / 1000);
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(raw);
+            Files.delete(packed);
+        }
+    }
+}
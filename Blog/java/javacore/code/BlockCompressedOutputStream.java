@@ -0,0 +1,149 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Cuts the data into blocks and compresses every block on its own, on a pool of
+// threads, while the caller keeps writing. Blocks are written in order. An index of
+// block offsets goes at the end of the file, so BlockCompressedInputStream can seek.
+//
+// File:    [magic: int][codec: byte][block size: int] block* index trailer
+// Block:   [length: int][compressed length: int][CRC32 of the data: int][compressed data]
+// Index:   one [offset in the data: long][offset in the file: long] per block
+// Trailer: [index offset: long][block count: int][data length: long][magic: int]
+public class BlockCompressedOutputStream extends OutputStream {
+    static final int MAGIC = 0x424C4B5A; // "BLKZ"
+    static final int HEADER = 9;
+    static final int BLOCK_HEADER = 12;
+    static final int TRAILER = 24;
+
+    private final OutputStream out;
+    private final BlockCodec codec;
+    private final Executor pool;
+    private final int maxPending;
+    private final Deque<CompletableFuture<Block>> pending = new ArrayDeque<>();
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private byte[] block;
+    private int count;
+    private long dataLength;
+    private long fileOffset;
+    private int blocks;
+    private boolean closed;
+
+    public BlockCompressedOutputStream(OutputStream out) throws IOException {
+        this(out, BlockCodec.deflate(Deflater.BEST_SPEED), 256 * 1024, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    // maxPending limits how many blocks are compressing at once, and so the memory used
+    public BlockCompressedOutputStream(OutputStream out, BlockCodec codec, int blockSize, Executor pool, int maxPending) throws IOException {
+        this.out = out;
+        this.codec = codec;
+        this.pool = pool;
+        this.maxPending = Math.max(1, maxPending);
+        this.block = new byte[blockSize];
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC).put(codec.id()).putInt(blockSize);
+        out.write(header.array());
+        fileOffset = HEADER;
+    }
+
+    public void write(int b) throws IOException {
+        if (count == block.length)
+            submitBlock();
+        block[count++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length)
+                submitBlock();
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    // Ends the current block early and writes everything compressed so far.
+    public void flush() throws IOException {
+        if (count > 0)
+            submitBlock();
+        while (!pending.isEmpty())
+            writeBlock(pending.poll());
+        out.flush();
+    }
+
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            flush();
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER);
+            trailer.putLong(fileOffset).putInt(blocks).putLong(dataLength).putInt(MAGIC);
+            index.writeTo(out);
+            out.write(trailer.array());
+        } finally {
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int length = count;
+        long offset = dataLength;
+        pending.add(CompletableFuture.supplyAsync(() -> {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, length);
+            return new Block(offset, length, (int) crc.getValue(), codec.compress(data, 0, length));
+        }, pool));
+        // the pool still reads the old array, so start a new one
+        block = new byte[block.length];
+        count = 0;
+        dataLength += length;
+
+        if (pending.size() >= maxPending)
+            writeBlock(pending.poll());
+    }
+
+    private void writeBlock(CompletableFuture<Block> future) throws IOException {
+        Block b;
+        try {
+            b = future.join();
+        } catch (CompletionException e) {
+            throw new IOException("Compression failed", e.getCause());
+        }
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER);
+        header.putInt(b.length).putInt(b.data.length).putInt(b.crc);
+        out.write(header.array());
+        out.write(b.data);
+
+        ByteBuffer entry = ByteBuffer.allocate(16);
+        entry.putLong(b.offset).putLong(fileOffset);
+        index.write(entry.array());
+        fileOffset += BLOCK_HEADER + b.data.length;
+        blocks++;
+    }
+
+    private static class Block {
+        final long offset;
+        final int length;
+        final int crc;
+        final byte[] data;
+
+        Block(long offset, int length, int crc, byte[] data) {
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.data = data;
+        }
+    }
+}
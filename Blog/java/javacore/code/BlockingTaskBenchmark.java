@@ -0,0 +1,75 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// java BlockingTaskBenchmark [tasks] [sleepMillis] [poolThreads]
+// Submits blocking tasks shaped like WorkerThread (they only sleep) to a fixed pool of
+// platform threads and to one virtual thread per task (Java 21). For each executor it
+// prints the wall time, the tasks per second, the most tasks running at the same time,
+// the peak number of platform threads and the peak heap use.
+public class BlockingTaskBenchmark {
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long sleepMillis = args.length > 1 ? Long.parseLong(args[1]) : 10;
+        int poolThreads = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        System.out.printf("%d tasks sleeping %d ms each%n", tasks, sleepMillis);
+        measure("fixed(" + poolThreads + ")", () -> Executors.newFixedThreadPool(poolThreads), tasks, sleepMillis);
+        measure("virtual", Executors::newVirtualThreadPerTaskExecutor, tasks, sleepMillis);
+    }
+
+    static void measure(String name, Supplier<ExecutorService> executors, int tasks, long sleepMillis) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peakRunning = new AtomicInteger();
+        long[] peakHeap = new long[1];
+
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+
+        // samples the heap while the tasks run; virtual thread stacks live on the heap
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap[0] = Math.max(peakHeap[0], memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        // close() waits for every task, like shutdown() + awaitTermination()
+        try (ExecutorService executor = executors.get()) {
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(() -> {
+                    peakRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        TimeUnit.MILLISECONDS.sleep(sleepMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        running.decrementAndGet();
+                    }
+                });
+            }
+        }
+        long wall = System.nanoTime() - start;
+        sampler.interrupt();
+        sampler.join();
+
+        System.out.printf("%-12s %7d ms  %,10.0f tasks/s  %6d at once  %5d platform threads  %5d MB heap%n",
+                name, wall / 1_000_000, tasks * 1e9 / wall, peakRunning.get(), threads.getPeakThreadCount(),
+                Math.max(0, peakHeap[0] - heapBefore) >> 20);
+    }
+}
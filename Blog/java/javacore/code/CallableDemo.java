@@ -1,19 +1,26 @@
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 public class CallableDemo {
+    // java CallableDemo [virtual]
     public static void main(String[] args) {
         Callable<String> callableTask = () -> {
             System.out.println("Task is executing ...");
             TimeUnit.SECONDS.sleep(3);
             return "Hello!";
         };
-        
+
+        boolean virtual = args.length > 0 && args[0].equalsIgnoreCase("virtual");
+        ExecutorService executor = virtual
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(5);
         try {
-            ExecutorService executor = Executors.newFixedThreadPool(5);
             Future<String> future = executor.submit(callableTask);
 
             System.out.println("Task execution finished: " + future.isDone());
@@ -22,11 +29,62 @@ public class CallableDemo {
             String message = future.get();
 
             System.out.println("Task execution finished: " + future.isDone());
-            System.out.print("Message: " + message);
+            System.out.println("Message: " + message);
         }
         catch (Exception ex) {
             System.out.println(ex.getMessage());
         }
+
+        // the same task in a pipeline: every step starts when the one before it completes,
+        // and no thread waits on get()
+        AsyncPipeline<String> greeting = AsyncPipeline.supply(callableTask, executor)
+                .map(String::toUpperCase)
+                .flatMap(hello -> AsyncPipeline.supply(() -> hello + " World!", executor));
+
+        // fan-out: one Callable per word, run in parallel; fan-in: the results in order
+        AsyncPipeline<String> words = AsyncPipeline.completed("callable future pipeline", executor)
+                .fanOut(text -> Arrays.stream(text.split(" "))
+                        .map(word -> (Callable<Integer>) word::length)
+                        .collect(Collectors.toList()))
+                .map(lengths -> "Word lengths: " + lengths);
+
+        // the fastest of two tasks wins, the other one is cancelled
+        AsyncPipeline<String> fastest = AsyncPipeline.anyOf(List.of(
+                AsyncPipeline.supply(slow("slow", 5), executor),
+                AsyncPipeline.supply(slow("fast", 1), executor)), executor)
+                .map(winner -> "Fastest: " + winner);
+
+        // a task that is too slow fails with TimeoutException and is interrupted
+        AsyncPipeline<String> late = AsyncPipeline.supply(slow("late", 10), executor)
+                .timeout(2, TimeUnit.SECONDS)
+                .recover(e -> "Timed out: " + e.getClass().getSimpleName());
+
+        AsyncPipeline<?> done = AsyncPipeline.allOf(List.of(greeting, words, fastest, late), executor)
+                .onComplete((results, error) -> {
+                    if (error != null)
+                        System.out.println("Failed: " + error);
+                    else
+                        results.forEach(System.out::println);
+                    executor.shutdown();
+                });
+
+        System.out.println("main is not blocked and ends here");
+
+        // virtual threads are daemon threads: the JVM would exit before the pipeline is done
+        if (virtual)
+            done.toFuture().join();
+    }
+
+    static Callable<String> slow(String name, int seconds) {
+        return () -> {
+            try {
+                TimeUnit.SECONDS.sleep(seconds);
+                return name;
+            } catch (InterruptedException e) {
+                System.out.println(name + " was cancelled");
+                throw e;
+            }
+        };
     }
 
 }
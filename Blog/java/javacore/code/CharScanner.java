@@ -0,0 +1,133 @@
+import java.io.*;
+import java.util.NoSuchElementException;
+
+// Reads characters from a Reader a block at a time into one reusable char[],
+// then scans that array directly. read() is an array access instead of a
+// synchronized call into the Reader, and nextInt()/nextLong() parse digits
+// straight from the array without creating a String.
+public class CharScanner implements Closeable {
+    private final Reader in;
+    private final char[] buf;
+    private int pos;
+    private int limit;
+
+    public CharScanner(Reader in) {
+        this(in, 64 * 1024);
+    }
+
+    public CharScanner(Reader in, int bufferSize) {
+        this.in = in;
+        this.buf = new char[bufferSize];
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit)
+            return true;
+        int n = in.read(buf, 0, buf.length);
+        pos = 0;
+        limit = Math.max(n, 0);
+        return n > 0;
+    }
+
+    // The next character, or -1 at the end
+    public int read() throws IOException {
+        if (pos == limit && !fill())
+            return -1;
+        return buf[pos++];
+    }
+
+    // Skips whitespace; false if only whitespace was left
+    public boolean hasNext() throws IOException {
+        while (fill()) {
+            while (pos < limit) {
+                if (!Character.isWhitespace(buf[pos]))
+                    return true;
+                pos++;
+            }
+        }
+        return false;
+    }
+
+    // The next token separated by whitespace
+    public String next() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        StringBuilder token = new StringBuilder();
+        while (fill()) {
+            int start = pos;
+            while (pos < limit && !Character.isWhitespace(buf[pos]))
+                pos++;
+            token.append(buf, start, pos - start);
+            if (pos < limit)
+                break;
+        }
+        return token.toString();
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value)
+            throw new NumberFormatException("Value out of int range: " + value);
+        return (int) value;
+    }
+
+    public long nextLong() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        boolean negative = false;
+        if (buf[pos] == '-' || buf[pos] == '+') {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (fill()) {
+            char c = buf[pos];
+            if (c < '0' || c > '9')
+                break;
+            // accumulate negatively, so Long.MIN_VALUE can be read too
+            if (value < (Long.MIN_VALUE + (c - '0')) / 10)
+                throw new NumberFormatException("Value out of long range");
+            value = value * 10 - (c - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0 || (fill() && !Character.isWhitespace(buf[pos])))
+            throw new NumberFormatException("Not a number");
+        if (!negative && value == Long.MIN_VALUE)
+            throw new NumberFormatException("Value out of long range");
+        return negative ? value : -value;
+    }
+
+    // Puts the rest of the current line into `line`, which is cleared first, so one
+    // StringBuilder can be reused for every line. Returns false at the end.
+    public boolean nextLine(StringBuilder line) throws IOException {
+        line.setLength(0);
+        if (!fill())
+            return false;
+        while (fill()) {
+            int start = pos;
+            while (pos < limit && buf[pos] != '\n')
+                pos++;
+            int end = pos;
+            line.append(buf, start, end - start);
+            if (pos < limit) {
+                pos++; // skip '\n'
+                break;
+            }
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r')
+            line.setLength(length - 1);
+        return true;
+    }
+
+    public String nextLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        return nextLine(line) ? line.toString() : null;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+}
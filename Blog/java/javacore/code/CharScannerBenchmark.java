@@ -0,0 +1,113 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Compares the loops of FileReaderDemo and InputStreamDemo, which call read()
+// once per character or byte, with reading whole blocks and with CharScanner.
+// Every case runs a few times first, so the JIT has compiled it before it's measured.
+//
+// java CharScannerBenchmark [sizeMB] [runs]
+public class CharScannerBenchmark {
+    interface Case {
+        long run(Path path) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int sizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path path = Files.createTempFile("scanner", ".txt");
+        try {
+            createFile(path, sizeMB);
+            System.out.println("File size: " + Files.size(path) / (1 << 20) + " MB of numbers and words");
+
+            measure("FileReader.read() per char", path, runs, p -> {
+                long count = 0;
+                try (FileReader fr = new FileReader(p.toFile())) {
+                    while (fr.read() != -1)
+                        count++;
+                }
+                return count;
+            });
+            measure("FileInputStream.read() per byte", path, runs, p -> {
+                long count = 0;
+                try (FileInputStream fin = new FileInputStream(p.toFile())) {
+                    while (fin.read() != -1)
+                        count++;
+                }
+                return count;
+            });
+            measure("BufferedReader.read() per char", path, runs, p -> {
+                long count = 0;
+                try (BufferedReader br = new BufferedReader(new FileReader(p.toFile()))) {
+                    while (br.read() != -1)
+                        count++;
+                }
+                return count;
+            });
+            measure("FileInputStream.read(byte[])", path, runs, p -> {
+                long count = 0;
+                byte[] block = new byte[64 * 1024];
+                try (FileInputStream fin = new FileInputStream(p.toFile())) {
+                    int n;
+                    while ((n = fin.read(block)) != -1)
+                        count += n;
+                }
+                return count;
+            });
+            measure("CharScanner.read()", path, runs, p -> {
+                long count = 0;
+                try (CharScanner scanner = new CharScanner(new FileReader(p.toFile()))) {
+                    while (scanner.read() != -1)
+                        count++;
+                }
+                return count;
+            });
+            measure("CharScanner.nextLong() sum", path, runs, p -> {
+                long sum = 0;
+                try (CharScanner scanner = new CharScanner(new FileReader(p.toFile()))) {
+                    StringBuilder line = new StringBuilder();
+                    while (scanner.hasNext()) {
+                        sum += scanner.nextLong();
+                        scanner.nextLine(line); // the words after the number
+                    }
+                }
+                return sum;
+            });
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    static void measure(String name, Path path, int runs, Case c) throws IOException {
+        long result = 0;
+        for (int i = 0; i < 2; i++)
+            result = c.run(path);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            c.run(path);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-34s %8.1f ms  (result %d)%n", name, best / 1e6, result);
+    }
+
+    // lines like "123456 lorem ipsum"
+    static void createFile(Path path, int sizeMB) throws IOException {
+        String[] words = { "lorem", "ipsum", "dolor", "sit", "amet" };
+        Random random = new Random(42);
+        long target = (long) sizeMB << 20;
+        try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            long written = 0;
+            while (written < target) {
+                String line = random.nextInt(1_000_000) + " " + words[random.nextInt(words.length)] + " "
+                        + words[random.nextInt(words.length)];
+                bw.write(line);
+                bw.newLine();
+                written += line.length() + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+import java.io.*;
+import java.net.*;
+
+// Serves one client with plain blocking reads and writes. It is cheap enough to run
+// one per connection when the executor hands each handler its own virtual thread.
+public class ClientHandler implements Runnable {
+	private final Socket s;
+	private final MessageHandler handler;
+
+	public ClientHandler(Socket s, MessageHandler handler) {
+		this.s = s;
+		this.handler = handler;
+	}
+
+	// The connection is counted as opened by the accept loop, so clients still
+	// waiting in the executor's queue are counted too.
+	public void run() {
+		try {
+			MessageCodec codec = new LineCodec(s.getInputStream(), s.getOutputStream());
+			boolean first = true;
+
+			while (true) {
+				String receivedMessage = codec.read();
+				if (receivedMessage == null || receivedMessage.equalsIgnoreCase("quit"))
+					break;
+				if (first && receivedMessage.equals(MessageCodec.BINARY_HELLO)) {
+					codec.write(MessageCodec.BINARY_ACK);
+					codec.flush();
+					codec = new BinaryCodec(s.getInputStream(), s.getOutputStream());
+				}
+				else {
+					codec.write(handler.handle(receivedMessage));
+					codec.flush();
+				}
+				first = false;
+			}
+		}
+		catch (IOException e) {
+			// the client went away without sending "quit"
+		}
+		finally {
+			try {
+				s.close();
+			}
+			catch (IOException e) {
+			}
+			ConnectionStats.closed();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Live/total connection counters shared by every TCPServer mode,
+// printed periodically so the modes can be compared under the same load.
+public class ConnectionStats {
+	static final AtomicInteger live = new AtomicInteger();
+	static final AtomicInteger peak = new AtomicInteger();
+	static final AtomicLong total = new AtomicLong();
+
+	static void opened() {
+		int n = live.incrementAndGet();
+		peak.accumulateAndGet(n, Math::max);
+		total.incrementAndGet();
+	}
+
+	static void closed() {
+		live.decrementAndGet();
+	}
+
+	static void startReporter(int seconds) {
+		Thread t = new Thread(() -> {
+			try {
+				while (true) {
+					Thread.sleep(seconds * 1000L);
+					System.out.println("Connections: live=" + live.get() + " peak=" + peak.get()
+						+ " total=" + total.get() + " threads=" + Thread.activeCount());
+				}
+			}
+			catch (InterruptedException e) {
+			}
+		}, "connection-stats");
+		t.setDaemon(true);
+		t.start();
+	}
+}
@@ -4,20 +4,24 @@ import java.io.*;
 public class DataInputStreamDemo {
     public static void main(String[] args) throws IOException {
         int iVal = 0;
+        double dVal = 0;
         boolean bVal = false;
-        DataInputStream dis;
+        DataInputStream dis = null;
 
         try {
-            dis = new DataInputStream(new FileInputStream("a.txt"));
+            // without the BufferedInputStream, every readXxx() is a system call
+            dis = new DataInputStream(new BufferedInputStream(new FileInputStream("a.txt")));
             iVal = dis.readInt();
+            dVal = dis.readDouble();
             bVal = dis.readBoolean();
             // dis.readUTF();
-        } catch (IOException exc) {
+        } catch (FileNotFoundException exc) {
             System.out.println("Error open file.");
         } catch (IOException exc) {
             System.out.println("Error read file.");
         } finally {
-            dis.close();
+            if (dis != null)
+                dis.close();
         }
 
     }
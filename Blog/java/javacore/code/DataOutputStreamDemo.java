@@ -6,7 +6,7 @@ public class DataOutputStreamDemo {
 
         DataOutputStream dos;
         try {
-            dos = new DataOutputStream(new FileOutputStream("a.txt"));
+            dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream("a.txt")));
             dos.writeInt(12345);
             dos.writeDouble(-67.76);
             dos.writeBoolean(true);
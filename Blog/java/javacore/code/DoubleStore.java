@@ -0,0 +1,157 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// An array of doubles kept in a file, like random.dat in RandomAccessFileDemo
+// (same layout: 8 big-endian bytes per value, no header), but read and written
+// through memory mappings. get(i) and set(i, v) are memory accesses, not a seek
+// plus a system call. The file is mapped in segments of up to 1 GB, because
+// one mapping can't be larger than 2 GB.
+public class DoubleStore implements Closeable {
+    static final int SEGMENT_BITS = 27; // 2^27 doubles = 1 GB per segment
+    static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+    static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final FileChannel channel;
+    private MappedByteBuffer[] mapped = new MappedByteBuffer[0];
+    private DoubleBuffer[] segments = new DoubleBuffer[0];
+    // values in use, and values mapped (the file is grown ahead, and cut back to size on close)
+    private long size;
+    private long capacity;
+
+    public DoubleStore(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        size = channel.size() / 8;
+        remap(size);
+    }
+
+    // number of doubles in the file
+    public long size() {
+        return size;
+    }
+
+    public double get(long index) {
+        checkIndex(index);
+        return segments[(int) (index >>> SEGMENT_BITS)].get((int) (index & SEGMENT_MASK));
+    }
+
+    // Writing past the end grows the file; the new values in between read as 0.0.
+    public void set(long index, double value) throws IOException {
+        if (index >= size)
+            grow(index + 1);
+        checkIndex(index);
+        segments[(int) (index >>> SEGMENT_BITS)].put((int) (index & SEGMENT_MASK), value);
+    }
+
+    // Copies values [from, from + length) into dst[offset...]
+    public void get(long from, double[] dst, int offset, int length) {
+        checkRange(from, length);
+        while (length > 0) {
+            DoubleBuffer segment = segments[(int) (from >>> SEGMENT_BITS)];
+            int position = (int) (from & SEGMENT_MASK);
+            int n = Math.min(length, segment.capacity() - position);
+            segment.get(position, dst, offset, n);
+            from += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    public void set(long from, double[] src, int offset, int length) throws IOException {
+        if (from + length > size)
+            grow(from + length);
+        checkRange(from, length);
+        while (length > 0) {
+            DoubleBuffer segment = segments[(int) (from >>> SEGMENT_BITS)];
+            int position = (int) (from & SEGMENT_MASK);
+            int n = Math.min(length, segment.capacity() - position);
+            segment.put(position, src, offset, n);
+            from += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    // Maps at least half as much room again as before, so appending one value
+    // at a time doesn't remap the file every time.
+    public void grow(long minSize) throws IOException {
+        if (minSize <= size)
+            return;
+        if (minSize > capacity)
+            remap(Math.max(minSize, capacity + capacity / 2 + 1024));
+        size = minSize;
+    }
+
+    // Writes the changed pages to the storage device, like FileChannel.force.
+    public void force() {
+        for (MappedByteBuffer m : mapped)
+            m.force();
+    }
+
+    // Cuts off the room grown ahead, so the file holds exactly size() values.
+    // Windows refuses to truncate a file that is still mapped, and a mapping only goes
+    // away when its buffer is garbage collected; there the extra zeros are left in the file.
+    public void close() throws IOException {
+        force();
+        // drop the mappings first, so they can be released
+        mapped = new MappedByteBuffer[0];
+        segments = new DoubleBuffer[0];
+        try {
+            if (channel.size() > size * 8)
+                channel.truncate(size * 8);
+        } catch (IOException e) {
+            // still mapped (Windows): keep the file as it is
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void remap(long newCapacity) throws IOException {
+        int count = (int) ((newCapacity + SEGMENT_SIZE - 1) >>> SEGMENT_BITS);
+        int full = (int) (capacity >>> SEGMENT_BITS);
+        mapped = Arrays.copyOf(mapped, count);
+        segments = Arrays.copyOf(segments, count);
+        // segments that were already full keep their mapping; the last partial one is mapped again, larger
+        for (int i = full; i < count; i++) {
+            long start = i * SEGMENT_SIZE;
+            long length = Math.min(SEGMENT_SIZE, newCapacity - start);
+            mapped[i] = channel.map(FileChannel.MapMode.READ_WRITE, start * 8, length * 8);
+            segments[i] = mapped[i].asDoubleBuffer();
+        }
+        capacity = newCapacity;
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+    }
+
+    private void checkRange(long from, int length) {
+        if (from < 0 || length < 0 || from + length > size)
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + (from + length) + ") out of bounds for size " + size);
+    }
+
+    // The same steps as RandomAccessFileDemo
+    public static void main(String[] args) throws IOException {
+        double data[] = { 19.4, 10.1, 123.54, 33.0, 87.9, 74.25 };
+        try (DoubleStore store = new DoubleStore(Paths.get("random.dat"))) {
+            store.set(0, data, 0, data.length);
+
+            System.out.println("First value is " + store.get(0));
+            System.out.println("Second value is " + store.get(1));
+            System.out.println("Fourth value is " + store.get(3));
+
+            // Now, read every other value.
+            for (int i = 0; i < data.length; i += 2) {
+                System.out.println(store.get(i));
+            }
+            store.force();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// Fast reading of numbers from System.in (or any InputStream). Bytes are read
+// 64 KB at a time and numbers are parsed straight from the bytes, so reading an
+// int creates no String and runs no regular expression, unlike Scanner.nextInt()
+// or Integer.parseInt(reader.readLine()).
+//
+//     FastInput in = new FastInput(System.in);
+//     int n = in.nextInt();
+//     long sum = 0;
+//     for (int i = 0; i < n; i++)
+//         sum += in.nextLong();
+public class FastInput {
+    // 10^0 .. 10^22 are exact doubles
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++)
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+
+    private final InputStream in;
+    private final byte[] buf = new byte[64 * 1024];
+    private byte[] token = new byte[64];
+    private int pos;
+    private int limit;
+
+    public FastInput(InputStream in) {
+        this.in = in;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buf[pos] & 0xFF;
+    }
+
+    private byte[] ensureToken(int length) {
+        if (length > token.length)
+            token = Arrays.copyOf(token, Math.max(length, token.length * 2));
+        return token;
+    }
+
+    // Skips spaces and line breaks; false at the end of the input
+    public boolean hasNext() throws IOException {
+        int b;
+        while ((b = peek()) != -1) {
+            if (b > ' ')
+                return true;
+            pos++;
+        }
+        return false;
+    }
+
+    public int nextInt() throws IOException {
+        long value = nextLong();
+        if (value != (int) value)
+            throw new NumberFormatException("Value out of int range: " + value);
+        return (int) value;
+    }
+
+    public long nextLong() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        boolean negative = false;
+        int b = peek();
+        if (b == '-' || b == '+') {
+            negative = b == '-';
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while ((b = peek()) >= '0' && b <= '9') {
+            // accumulate negatively, so Long.MIN_VALUE can be read too
+            if (value < (Long.MIN_VALUE + (b - '0')) / 10)
+                throw new NumberFormatException("Value out of long range");
+            value = value * 10 - (b - '0');
+            digits++;
+            pos++;
+        }
+        if (digits == 0 || b > ' ')
+            throw new NumberFormatException("Not a number");
+        if (!negative && value == Long.MIN_VALUE)
+            throw new NumberFormatException("Value out of long range");
+        return negative ? value : -value;
+    }
+
+    // Numbers with at most 15 digits and no exponent are computed exactly from a
+    // long and a power of ten; anything else goes to Double.parseDouble.
+    public double nextDouble() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        int length = 0;
+        boolean negative = false;
+        boolean simple = true;
+        boolean dot = false;
+        boolean sawDigit = false;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        int b;
+        while ((b = peek()) > ' ') {
+            token = ensureToken(length + 1);
+            token[length++] = (byte) b;
+            pos++;
+            if (b >= '0' && b <= '9') {
+                sawDigit = true;
+                if (mantissa == 0 && b == '0' && !dot)
+                    continue; // leading zero
+                if (digits == 15) {
+                    simple = false;
+                    continue;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot)
+                    scale++;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else if ((b == '-' || b == '+') && length == 1) {
+                negative = b == '-';
+            } else {
+                simple = false; // exponent, NaN, Infinity...
+            }
+        }
+        if (simple && sawDigit && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(token, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    // The next token separated by whitespace, decoded as UTF-8
+    public String next() throws IOException {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        int length = 0;
+        int b;
+        while ((b = peek()) > ' ') {
+            token = ensureToken(length + 1);
+            token[length++] = (byte) b;
+            pos++;
+        }
+        return new String(token, 0, length, StandardCharsets.UTF_8);
+    }
+}
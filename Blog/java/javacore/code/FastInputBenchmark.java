@@ -0,0 +1,72 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Scanner;
+
+// Reads the same file of numbers, one per line, the ways BasicIO does
+// (Scanner.nextInt(), Integer.parseInt(reader.readLine())) and with FastInput.
+// The file takes the place of System.in, which is how large inputs arrive when piped.
+//
+// java FastInputBenchmark [count]
+public class FastInputBenchmark {
+    interface Case {
+        long run(InputStream in) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        Path path = Files.createTempFile("numbers", ".txt");
+        try {
+            Random random = new Random(42);
+            try (BufferedWriter bw = Files.newBufferedWriter(path)) {
+                for (int i = 0; i < count; i++) {
+                    bw.write(Integer.toString(random.nextInt() >> random.nextInt(32)));
+                    bw.newLine();
+                }
+            }
+            System.out.println(count + " numbers, " + Files.size(path) / (1 << 20) + " MB");
+
+            measure("Scanner.nextInt()", path, in -> {
+                long sum = 0;
+                Scanner scanner = new Scanner(in);
+                while (scanner.hasNextInt())
+                    sum += scanner.nextInt();
+                return sum;
+            });
+            measure("parseInt(readLine())", path, in -> {
+                long sum = 0;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+                String line;
+                while ((line = reader.readLine()) != null)
+                    sum += Integer.parseInt(line);
+                return sum;
+            });
+            measure("FastInput.nextInt()", path, in -> {
+                long sum = 0;
+                FastInput input = new FastInput(in);
+                while (input.hasNext())
+                    sum += input.nextInt();
+                return sum;
+            });
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    static void measure(String name, Path path, Case c) throws IOException {
+        // the first run warms up the JIT
+        long result = 0;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            try (InputStream in = new FileInputStream(path.toFile())) {
+                long start = System.nanoTime();
+                result = c.run(in);
+                if (i > 0)
+                    best = Math.min(best, System.nanoTime() - start);
+            }
+        }
+        System.out.printf("%-22s %8.1f ms  (sum %d)%n", name, best / 1e6, result);
+    }
+}
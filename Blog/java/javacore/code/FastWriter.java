@@ -0,0 +1,142 @@
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes text into one reusable byte array and hands it to a FileChannel when it
+// is full. Numbers are written as digits directly into the buffer and strings are
+// encoded to UTF-8 in place, so a line like "Hello: " + i + "\r\n" needs no
+// temporary String at all:
+//
+//     try (FastWriter out = new FastWriter(Paths.get("a1.txt"))) {
+//         for (int i = 0; i <= 10; i++)
+//             out.append("Hello: ").append(i).append("\r\n");
+//     }
+public class FastWriter implements Closeable, Flushable {
+    private final WritableByteChannel channel;
+    private final byte[] buf;
+    private final ByteBuffer view;
+    private int pos;
+    private final byte[] digits = new byte[20];
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    public FastWriter(Path path) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING), 1 << 20);
+    }
+
+    public FastWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buf = new byte[bufferSize];
+        this.view = ByteBuffer.wrap(buf);
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buf.length - pos < bytes)
+            flushBuffer();
+    }
+
+    public FastWriter append(CharSequence s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (pos == buf.length)
+                    flushBuffer();
+                buf[pos++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                appendCodePoint(Character.toCodePoint(c, s.charAt(++i)));
+            } else {
+                appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+            }
+        }
+        return this;
+    }
+
+    public FastWriter append(char c) throws IOException {
+        if (c < 0x80) {
+            ensure(1);
+            buf[pos++] = (byte) c;
+            return this;
+        }
+        return appendCodePoint(Character.isSurrogate(c) ? '?' : c);
+    }
+
+    private FastWriter appendCodePoint(int cp) throws IOException {
+        ensure(4);
+        if (cp < 0x80) {
+            buf[pos++] = (byte) cp;
+        } else if (cp < 0x800) {
+            buf[pos++] = (byte) (0xC0 | cp >> 6);
+            buf[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else if (cp < 0x10000) {
+            buf[pos++] = (byte) (0xE0 | cp >> 12);
+            buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buf[pos++] = (byte) (0x80 | cp & 0x3F);
+        } else {
+            buf[pos++] = (byte) (0xF0 | cp >> 18);
+            buf[pos++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            buf[pos++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            buf[pos++] = (byte) (0x80 | cp & 0x3F);
+        }
+        return this;
+    }
+
+    public FastWriter append(int value) throws IOException {
+        return append((long) value);
+    }
+
+    public FastWriter append(long value) throws IOException {
+        ensure(20);
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+        // digits come out backwards, so fill the scratch array from its end
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        int length = digits.length - start;
+        System.arraycopy(digits, start, buf, pos, length);
+        pos += length;
+        return this;
+    }
+
+    // Double.toString's format; the StringBuilder is reused, so this allocates nothing either
+    public FastWriter append(double value) throws IOException {
+        scratch.setLength(0);
+        scratch.append(value);
+        return append(scratch);
+    }
+
+    public FastWriter newLine() throws IOException {
+        return append('\n');
+    }
+
+    private void flushBuffer() throws IOException {
+        view.clear().limit(pos);
+        while (view.hasRemaining())
+            channel.write(view);
+        pos = 0;
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Writes the lines of FileWriterDemo ("Hello: " + i + "\r\n") the way the demo
+// does, through a BufferedWriter, and with FastWriter.
+//
+// java FastWriterBenchmark [lines]
+public class FastWriterBenchmark {
+    interface Case {
+        void run(Path path, int lines) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 100_000_000;
+        System.out.println(lines + " lines");
+
+        measure("FileWriter + concatenation", lines, (path, n) -> {
+            try (FileWriter fw = new FileWriter(path.toFile())) {
+                String str;
+                for (int i = 0; i < n; i++) {
+                    str = "Hello: " + i + "\r\n";
+                    fw.write(str);
+                }
+            }
+        });
+        measure("BufferedWriter + concatenation", lines, (path, n) -> {
+            try (BufferedWriter bw = new BufferedWriter(new FileWriter(path.toFile()), 1 << 16)) {
+                for (int i = 0; i < n; i++) {
+                    bw.write("Hello: " + i + "\r\n");
+                }
+            }
+        });
+        measure("FastWriter", lines, (path, n) -> {
+            try (FastWriter out = new FastWriter(path)) {
+                for (int i = 0; i < n; i++) {
+                    out.append("Hello: ").append(i).append("\r\n");
+                }
+            }
+        });
+    }
+
+    static void measure(String name, int lines, Case c) throws IOException {
+        Path path = Files.createTempFile("writer", ".txt");
+        try {
+            c.run(path, Math.min(lines, 1_000_000)); // warm up the JIT
+            long start = System.nanoTime();
+            c.run(path, lines);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-32s %8.1f ms %8.1f MB/s%n", name, nanos / 1e6,
+                    Files.size(path) / (double) (1 << 20) / (nanos / 1e9));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
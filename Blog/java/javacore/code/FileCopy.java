@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Copies files in bulk instead of one byte per read()/write() call.
+// - transfer: FileChannel.transferTo, which the OS can do without copying the data
+//   into Java at all (sendfile/copy_file_range on Linux)
+// - block: reads and writes through a large direct buffer reused by each thread
+// - mapped: maps both files into memory and copies between the mappings
+// copy() picks one from the file size.
+public class FileCopy {
+    public enum Method { BLOCK, MAPPED, TRANSFER }
+
+    static final int BLOCK_SIZE = 1 << 20;
+    static final long MAP_CHUNK = 256L << 20;
+    static final long SMALL_FILE = 1L << 20;
+    static final long MEDIUM_FILE = 64L << 20;
+
+    private static final ThreadLocal<ByteBuffer> buffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BLOCK_SIZE));
+
+    // Small files fit in one block; medium ones are mapped; for large ones, mapping
+    // gigabytes costs page-table work, and transferTo stays in the kernel.
+    public static Method choose(long size) {
+        if (size <= SMALL_FILE)
+            return Method.BLOCK;
+        if (size <= MEDIUM_FILE)
+            return Method.MAPPED;
+        return Method.TRANSFER;
+    }
+
+    public static long copy(Path from, Path to) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ)) {
+            return copy(from, to, choose(in.size()));
+        }
+    }
+
+    public static long copy(Path from, Path to, Method method) throws IOException {
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(to, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            switch (method) {
+                case BLOCK:
+                    return blockCopy(in, out);
+                case MAPPED:
+                    return mappedCopy(in, out);
+                default:
+                    return transfer(in, out);
+            }
+        }
+    }
+
+    static long transfer(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        long position = 0;
+        // transferTo may copy less than asked (e.g. 2 GB at a time on Linux)
+        while (position < size) {
+            long n = in.transferTo(position, size - position, out);
+            // no progress, e.g. the file was cut short meanwhile: copy the rest in blocks
+            if (n <= 0) {
+                in.position(position);
+                out.position(position);
+                return position + blockCopy(in, out);
+            }
+            position += n;
+        }
+        return position;
+    }
+
+    static long blockCopy(FileChannel in, FileChannel out) throws IOException {
+        ByteBuffer buf = buffer.get();
+        long total = 0;
+        buf.clear();
+        while (in.read(buf) != -1 || buf.position() > 0) {
+            buf.flip();
+            total += out.write(buf);
+            buf.compact();
+        }
+        return total;
+    }
+
+    static long mappedCopy(FileChannel in, FileChannel out) throws IOException {
+        long size = in.size();
+        // a single mapping is limited to 2 GB, so map in chunks
+        for (long position = 0; position < size; position += MAP_CHUNK) {
+            long length = Math.min(MAP_CHUNK, size - position);
+            MappedByteBuffer source = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+            MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, position, length);
+            target.put(source);
+        }
+        return size;
+    }
+}
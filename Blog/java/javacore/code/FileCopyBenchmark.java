@@ -0,0 +1,75 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+// Copies the same file with BufferedInputOutputStreamDemo's byte-at-a-time loop
+// and with each FileCopy method, and prints the speed of each.
+//
+// java FileCopyBenchmark [sizeMB] [runs]
+public class FileCopyBenchmark {
+    public static void main(String[] args) throws IOException {
+        int sizeMB = args.length > 0 ? Integer.parseInt(args[0]) : 256;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Path from = Files.createTempFile("copy-from", ".dat");
+        Path to = Files.createTempFile("copy-to", ".dat");
+        try {
+            createFile(from, sizeMB);
+            System.out.println("File size: " + sizeMB + " MB, auto picks " + FileCopy.choose(Files.size(from)));
+
+            measure("stream (byte at a time)", runs, sizeMB, () -> streamCopy(from, to), from, to);
+            for (FileCopy.Method method : FileCopy.Method.values()) {
+                measure(method.toString(), runs, sizeMB, () -> FileCopy.copy(from, to, method), from, to);
+            }
+            measure("auto", runs, sizeMB, () -> FileCopy.copy(from, to), from, to);
+        } finally {
+            Files.deleteIfExists(from);
+            Files.deleteIfExists(to);
+        }
+    }
+
+    interface Copy {
+        void run() throws IOException;
+    }
+
+    static void measure(String name, int runs, int sizeMB, Copy copy, Path from, Path to) throws IOException {
+        copy.run(); // warm up, and bring the source into the page cache
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            copy.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        if (Files.mismatch(from, to) != -1)
+            throw new IOException(name + " produced a different file");
+        System.out.printf("%-24s %8.1f ms %8.1f MB/s%n", name, best / 1e6, sizeMB / (best / 1e9));
+    }
+
+    // the loop from BufferedInputOutputStreamDemo
+    static void streamCopy(Path from, Path to) throws IOException {
+        try (BufferedInputStream bin = new BufferedInputStream(new FileInputStream(from.toFile()));
+                BufferedOutputStream bout = new BufferedOutputStream(new FileOutputStream(to.toFile()))) {
+            while (true) {
+                int datum = bin.read();
+                if (datum == -1)
+                    break;
+                bout.write(datum);
+            }
+        }
+    }
+
+    static void createFile(Path path, int sizeMB) throws IOException {
+        byte[] block = new byte[1 << 20];
+        Random random = new Random(42);
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int i = 0; i < sizeMB; i++) {
+                random.nextBytes(block);
+                out.write(ByteBuffer.wrap(block));
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// An append-only log that many threads can write to. append() only queues the
+// record; one writer thread takes everything queued so far, writes it with one
+// FileChannel.write and makes it durable with one force(). Each caller's future
+// completes with the record's offset once it is on disk, so N threads waiting for
+// durability share one fsync instead of paying for N of them.
+//
+// Record: [length: int][CRC32 of the payload: int][payload]
+public class GroupCommitLog implements Closeable {
+    static final int HEADER = 8;
+
+    private final FileChannel channel;
+    private final int maxBatchBytes;
+    private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+    private final Thread writer = new Thread(this::writeLoop, "group-commit");
+    private final AtomicBoolean closed = new AtomicBoolean();
+    // set when a failed batch could not be cut off again; the log then refuses all appends
+    private volatile IOException failure;
+    private ByteBuffer batch;
+    private long position;
+    private volatile long records;
+    private volatile long commits;
+
+    public GroupCommitLog(Path path, int maxBatchBytes) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            // a crash can leave half a record at the end: cut it off, or new records would sit behind it
+            this.position = scan(path, record -> {})[1];
+            if (channel.size() > position) {
+                channel.truncate(position);
+                channel.force(false);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        this.maxBatchBytes = maxBatchBytes;
+        this.batch = ByteBuffer.allocateDirect(maxBatchBytes);
+        // records are only durable once their future completes, so the writer
+        // doesn't need to keep the JVM alive; close() still waits for it
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<Long> append(byte[] payload) {
+        Entry e = new Entry(payload);
+        if (failure != null)
+            e.done.completeExceptionally(failure);
+        else if (closed.get())
+            e.done.completeExceptionally(new IOException("Log is closed"));
+        else {
+            queue.add(e);
+            // close() may have drained the queue between the check above and the add;
+            // if the entry is still there nobody will write it
+            if (closed.get() && queue.remove(e))
+                e.done.completeExceptionally(new IOException("Log is closed"));
+        }
+        return e.done;
+    }
+
+    public long records() {
+        return records;
+    }
+
+    public long commits() {
+        return commits;
+    }
+
+    private void writeLoop() {
+        List<Entry> group = new ArrayList<>();
+        while (true) {
+            try {
+                Entry first = queue.take();
+                if (first == Entry.CLOSE)
+                    return;
+                group.add(first);
+                int bytes = HEADER + first.payload.length;
+                // take whatever else is waiting, up to the batch size
+                Entry next;
+                boolean close = false;
+                while (bytes < maxBatchBytes && (next = queue.poll()) != null) {
+                    if (next == Entry.CLOSE) {
+                        close = true;
+                        break;
+                    }
+                    group.add(next);
+                    bytes += HEADER + next.payload.length;
+                }
+                commit(group, bytes);
+                if (close)
+                    return;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                for (Entry entry : group)
+                    entry.done.completeExceptionally(e);
+            }
+            group.clear();
+        }
+    }
+
+    private void commit(List<Entry> group, int bytes) throws IOException {
+        if (failure != null)
+            throw failure;
+        if (bytes > batch.capacity())
+            batch = ByteBuffer.allocateDirect(bytes);
+        batch.clear();
+        long[] offsets = new long[group.size()];
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < group.size(); i++) {
+            byte[] payload = group.get(i).payload;
+            offsets[i] = position + batch.position();
+            crc.reset();
+            crc.update(payload);
+            batch.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        }
+        batch.flip();
+        long end = position;
+        try {
+            while (batch.hasRemaining())
+                end += channel.write(batch, end);
+            channel.force(false);
+        } catch (IOException e) {
+            // remove whatever part of the batch reached the file, so the next batch follows the last good record
+            try {
+                channel.truncate(position);
+                channel.force(false);
+            } catch (IOException t) {
+                e.addSuppressed(t);
+                failure = e;
+            }
+            throw e;
+        }
+        position = end;
+
+        records += group.size();
+        commits++;
+        for (int i = 0; i < group.size(); i++)
+            group.get(i).done.complete(offsets[i]);
+    }
+
+    // Waits for the records already appended to be written, then closes the file.
+    public void close() throws IOException {
+        if (closed.compareAndSet(false, true)) {
+            queue.add(Entry.CLOSE);
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // appended while closing, after the writer had stopped; append() fails
+            // the entries that are added after this drain itself
+            Entry e;
+            while ((e = queue.poll()) != null)
+                e.done.completeExceptionally(new IOException("Log is closed"));
+            channel.close();
+        }
+    }
+
+    // Reads every record back; stops at the first incomplete or corrupt record,
+    // which is where a crash in the middle of a write would leave the log.
+    public static long replay(Path path, Consumer<byte[]> onRecord) throws IOException {
+        return scan(path, onRecord)[0];
+    }
+
+    // {number of valid records, offset just after the last of them}
+    static long[] scan(Path path, Consumer<byte[]> onRecord) throws IOException {
+        long count = 0;
+        long end = 0;
+        long size = Files.size(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length, checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                // a torn header can hold any length
+                if (length < 0 || length > size - end - HEADER)
+                    break;
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum)
+                    break;
+                onRecord.accept(payload);
+                count++;
+                end += HEADER + length;
+            }
+        }
+        return new long[] { count, end };
+    }
+
+    static class Entry {
+        static final Entry CLOSE = new Entry(new byte[0]);
+
+        final byte[] payload;
+        final CompletableFuture<Long> done = new CompletableFuture<>();
+
+        Entry(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    // java GroupCommitLog [threads] [records per thread]
+    // Compares OutputStreamDemo-style writing with a flush to disk after every record
+    // against the group commit, with every thread waiting until its record is durable.
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int perThread = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        byte[] payload = new byte[100];
+        Path path = Files.createTempFile("log", ".dat");
+        try {
+            long start = System.nanoTime();
+            try (FileOutputStream fout = new FileOutputStream(path.toFile())) {
+                for (int i = 0; i < threads * perThread; i++) {
+                    fout.write(payload);
+                    fout.getFD().sync();
+                }
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("One fsync per record: %d records in %d ms%n", threads * perThread, millis);
+
+            Files.delete(path);
+            start = System.nanoTime();
+            try (GroupCommitLog log = new GroupCommitLog(path, 1 << 20)) {
+                ExecutorService executor = Executors.newFixedThreadPool(threads);
+                for (int t = 0; t < threads; t++) {
+                    executor.execute(() -> {
+                        for (int i = 0; i < perThread; i++)
+                            log.append(payload).join();
+                    });
+                }
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.HOURS);
+                millis = (System.nanoTime() - start) / 1_000_000;
+                System.out.printf("Group commit:         %d records in %d ms, %d fsyncs (%.1f records each)%n",
+                        log.records(), millis, log.commits(), (double) log.records() / log.commits());
+            }
+            System.out.println("Replayed " + replay(path, record -> {}) + " records");
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A small HDR-style histogram: values below 2^SUB_BITS get their own bucket,
+// larger values share buckets whose width doubles with every power of two,
+// so every recorded value keeps about 2 significant digits (< 1% error)
+// with a fixed array, whatever the range. Recording is thread-safe.
+public class LatencyHistogram {
+	static final int SUB_BITS = 8;
+	static final int SUB_COUNT = 1 << SUB_BITS;
+	static final int HALF = SUB_COUNT / 2;
+	static final long MAX_VALUE = (1L << 45) - 1; // about 9.7 hours in nanoseconds
+
+	private final AtomicLongArray counts = new AtomicLongArray(indexOf(MAX_VALUE) + 1);
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	static int indexOf(long value) {
+		if (value < SUB_COUNT)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+		return exponent * HALF + (int) (value >>> exponent);
+	}
+
+	// the highest value that falls into the bucket
+	static long valueOf(int index) {
+		if (index < SUB_COUNT)
+			return index;
+		int exponent = index / HALF - 1;
+		long sub = index - exponent * HALF;
+		return ((sub + 1) << exponent) - 1;
+	}
+
+	public void record(long value) {
+		value = Math.max(0, Math.min(value, MAX_VALUE));
+		counts.incrementAndGet(indexOf(value));
+		total.incrementAndGet();
+		sum.addAndGet(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < counts.length(); i++) {
+			long c = other.counts.get(i);
+			if (c != 0)
+				counts.addAndGet(i, c);
+		}
+		total.addAndGet(other.total.get());
+		sum.addAndGet(other.sum.get());
+		max.accumulateAndGet(other.max.get(), Math::max);
+	}
+
+	public long count() {
+		return total.get();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	public double mean() {
+		long n = total.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	// percentile in [0, 100], e.g. 99.9
+	public long percentile(double percentile) {
+		long n = total.get();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank)
+				return Math.min(valueOf(i), max.get());
+		}
+		return max.get();
+	}
+
+	// "p50=... p99=... p999=... max=..." with values divided by `unit`, e.g. 1000 for ns -> us
+	public String summary(long unit, String unitName) {
+		return String.format("count=%d mean=%.1f%s p50=%d%s p90=%d%s p99=%d%s p999=%d%s max=%d%s",
+			count(), mean() / unit, unitName,
+			percentile(50) / unit, unitName, percentile(90) / unit, unitName,
+			percentile(99) / unit, unitName, percentile(99.9) / unit, unitName,
+			max() / unit, unitName);
+	}
+}
@@ -0,0 +1,32 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// The original framing: UTF-8 text, one message per line.
+public class LineCodec implements MessageCodec {
+	private final BufferedReader br;
+	private final BufferedWriter bw;
+
+	public LineCodec(InputStream is, OutputStream os) {
+		br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+		bw = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+	}
+
+	// MAX_MESSAGE is checked in chars here, which is never more than the UTF-8 bytes
+	public String read() throws IOException {
+		String line = br.readLine();
+		if (line != null && line.length() > MAX_MESSAGE)
+			throw new IOException("Message too long: " + line.length() + " chars");
+		return line;
+	}
+
+	public void write(String message) throws IOException {
+		if (message.length() > MAX_MESSAGE)
+			throw new IOException("Message too long: " + message.length() + " chars");
+		bw.write(message);
+		bw.newLine();
+	}
+
+	public void flush() throws IOException {
+		bw.flush();
+	}
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives TCPServer with many pipelined connections and reports throughput and latency.
+//
+// java LoadGenerator clients=100 rate=50000 size=64 duration=10 [window=64] [codec=binary]
+//                    [host=localhost] [port=3200] [server=nio|virtual|pool]
+//
+// rate is the total target of messages per second over all clients (0 = as fast as
+// possible). Latency is measured from the time a message was scheduled to be sent,
+// not when it actually went out, so a stalled server can't hide its queueing delay.
+// server=<mode> starts TCPServer in this JVM with the echo handler first.
+public class LoadGenerator {
+	public static void main(String[] arg) throws Exception {
+		int clients = Integer.parseInt(TCPServer.option(arg, "clients", "10"));
+		long rate = Long.parseLong(TCPServer.option(arg, "rate", "0"));
+		int size = Integer.parseInt(TCPServer.option(arg, "size", "64"));
+		int duration = Integer.parseInt(TCPServer.option(arg, "duration", "10"));
+		int window = Integer.parseInt(TCPServer.option(arg, "window", "64"));
+		String codec = TCPServer.option(arg, "codec", "line");
+		String host = TCPServer.option(arg, "host", "localhost");
+		int port = Integer.parseInt(TCPServer.option(arg, "port", "" + TCPServer.PORT));
+		String server = TCPServer.option(arg, "server", null);
+
+		if (server != null) {
+			Thread t = new Thread(() -> TCPServer.main(new String[] { server, "handler=echo" }), "server");
+			t.setDaemon(true);
+			t.start();
+			Thread.sleep(500);
+		}
+
+		String message = "x".repeat(size);
+		long intervalNanos = rate > 0 ? TimeUnit.SECONDS.toNanos(1) * clients / rate : 0;
+		long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+		long end = start + TimeUnit.SECONDS.toNanos(duration);
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		AtomicLong errors = new AtomicLong();
+		List<Thread> threads = new ArrayList<>();
+		for (int c = 0; c < clients; c++) {
+			PipelinedClient client = new PipelinedClient(host, port, window, codec);
+			Thread t = new Thread(() -> drive(client, message, start, end, intervalNanos, histogram, errors), "load-" + c);
+			threads.add(t);
+		}
+		for (Thread t : threads)
+			t.start();
+		for (Thread t : threads)
+			t.join();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		long messages = histogram.count();
+		System.out.printf("%d clients, %d-byte messages, %s framing%n", clients, size, codec);
+		System.out.printf("Throughput: %.0f msg/s (%.1f MB/s each way), errors=%d%n",
+			messages / seconds, messages * (size + 1) / seconds / (1 << 20), errors.get());
+		System.out.println("Latency: " + histogram.summary(1000, "us"));
+	}
+
+	static void drive(PipelinedClient client, String message, long start, long end, long intervalNanos,
+			LatencyHistogram histogram, AtomicLong errors) {
+		try (client) {
+			long intended = start;
+			while (true) {
+				long now = System.nanoTime();
+				if (intervalNanos > 0) {
+					if (intended - now > 0)
+						LockSupport.parkNanos(intended - now);
+				}
+				else {
+					intended = now;
+				}
+				if (intended - end >= 0)
+					break;
+
+				long scheduled = intended;
+				CompletableFuture<String> reply = client.send(message);
+				reply.whenComplete((receivedMessage, e) -> {
+					if (e != null)
+						errors.incrementAndGet();
+					else
+						histogram.record(System.nanoTime() - scheduled);
+				});
+				intended += intervalNanos;
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			errors.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,42 @@
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// How messages are framed on a TCP connection. Every connection starts with
+// newline-framed text; a client that sends BINARY_HELLO as its first line and
+// gets BINARY_ACK back switches both sides to length-prefixed frames.
+public interface MessageCodec {
+	String BINARY_HELLO = "CODEC binary";
+	String BINARY_ACK = "OK binary";
+	// largest message in bytes, for both framings and on both sides
+	int MAX_MESSAGE = 1 << 20;
+
+	// Returns null when the peer has closed the connection.
+	String read() throws IOException;
+
+	// Buffers the message until flush().
+	void write(String message) throws IOException;
+
+	void flush() throws IOException;
+
+	// Client side of the negotiation: codec is "line" or "binary".
+	static MessageCodec connect(Socket s, String codec) throws IOException {
+		return connect(s.getInputStream(), s.getOutputStream(), codec);
+	}
+
+	static MessageCodec connect(InputStream is, OutputStream os, String codec) throws IOException {
+		if (!codec.equalsIgnoreCase("binary"))
+			return new LineCodec(is, os);
+
+		os.write((BINARY_HELLO + "\n").getBytes(StandardCharsets.UTF_8));
+		os.flush();
+		// read the answer byte by byte so nothing after it is consumed by a buffer
+		ByteArrayOutputStream answer = new ByteArrayOutputStream();
+		int b;
+		while ((b = is.read()) != -1 && b != '\n')
+			answer.write(b);
+		if (!answer.toString(StandardCharsets.UTF_8).trim().equals(BINARY_ACK))
+			throw new IOException("Server does not support binary framing");
+		return new BinaryCodec(is, os);
+	}
+}
@@ -0,0 +1,6 @@
+// Produces the reply for one line received by TCPServer.
+// One handler is shared by all connections, so implementations must be thread-safe.
+@FunctionalInterface
+public interface MessageHandler {
+	String handle(String message);
+}
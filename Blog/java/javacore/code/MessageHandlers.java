@@ -0,0 +1,74 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Handlers TCPServer can select by name with handler=<name>.
+// More can be added with register(), or by passing the name of a class
+// implementing MessageHandler, without touching the accept loop.
+public class MessageHandlers {
+	private static final Map<String, MessageHandler> handlers = new ConcurrentHashMap<>();
+
+	static {
+		register("echo", message -> message);
+		register("upper", message -> message.toUpperCase());
+		register("kv", new KeyValueHandler());
+		register("console", new ConsoleHandler());
+	}
+
+	public static void register(String name, MessageHandler handler) {
+		handlers.put(name.toLowerCase(), handler);
+	}
+
+	public static MessageHandler get(String name) {
+		MessageHandler handler = handlers.get(name.toLowerCase());
+		if (handler != null)
+			return handler;
+		try {
+			handler = (MessageHandler) Class.forName(name).getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | ClassCastException e) {
+			throw new IllegalArgumentException("Unknown handler: " + name);
+		}
+		register(name, handler);
+		return handler;
+	}
+
+	// PUT key value | GET key | DEL key, stored in memory and shared by all clients
+	static class KeyValueHandler implements MessageHandler {
+		private final Map<String, String> store = new ConcurrentHashMap<>();
+
+		public String handle(String message) {
+			String[] parts = message.trim().split("\\s+", 3);
+			String command = parts[0].toUpperCase();
+			if (command.equals("PUT") && parts.length == 3) {
+				store.put(parts[1], parts[2]);
+				return "OK";
+			}
+			if (command.equals("GET") && parts.length == 2) {
+				String value = store.get(parts[1]);
+				return value != null ? value : "NOT_FOUND";
+			}
+			if (command.equals("DEL") && parts.length == 2) {
+				return store.remove(parts[1]) != null ? "OK" : "NOT_FOUND";
+			}
+			return "ERROR usage: PUT key value | GET key | DEL key";
+		}
+	}
+
+	// The original behaviour: the operator types every reply
+	static class ConsoleHandler implements MessageHandler {
+		private final BufferedReader din = new BufferedReader(new InputStreamReader(System.in));
+
+		public synchronized String handle(String message) {
+			try {
+				String k = din.readLine();
+				return k != null ? k : "";
+			}
+			catch (IOException e) {
+				return "";
+			}
+		}
+	}
+}
@@ -0,0 +1,254 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Non-blocking TCPServer: the acceptor hands each SocketChannel to one of a few
+// event loops, and every loop multiplexes its clients on a single Selector.
+// Messages are newline-framed text, exactly what TCPClient writes with newLine(),
+// unless the client negotiates the binary framing of BinaryCodec.
+public class NioTCPServer {
+	private final int port;
+	private final EventLoop[] loops;
+
+	public NioTCPServer(int port, int loopCount, MessageHandler handler) throws IOException {
+		this.port = port;
+		this.loops = new EventLoop[Math.max(1, loopCount)];
+		for (int i = 0; i < loops.length; i++) {
+			loops[i] = new EventLoop(handler);
+		}
+	}
+
+	public void run() throws IOException {
+		for (int i = 0; i < loops.length; i++) {
+			Thread t = new Thread(loops[i], "nio-loop-" + i);
+			t.setDaemon(true);
+			t.start();
+		}
+
+		try (ServerSocketChannel ss = ServerSocketChannel.open()) {
+			ss.bind(new InetSocketAddress(port), 1024);
+			System.out.println("Waiting for clients on " + loops.length + " event loop(s)");
+
+			int next = 0;
+			while (true) {
+				SocketChannel s = ss.accept();
+				s.configureBlocking(false);
+				s.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				loops[next].register(s);
+				next = (next + 1) % loops.length;
+			}
+		}
+	}
+
+	static class EventLoop implements Runnable {
+		// stop reading from a client while this many reply bytes wait to be sent,
+		// so a client that doesn't read its replies can't make `out` grow without limit
+		static final int HIGH_WATER = 256 * 1024;
+
+		final Selector selector;
+		final MessageHandler handler;
+		final Queue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+		// one read buffer per loop, shared by all of its connections
+		final ByteBuffer readBuf = ByteBuffer.allocateDirect(64 * 1024);
+
+		EventLoop(MessageHandler handler) throws IOException {
+			this.handler = handler;
+			selector = Selector.open();
+		}
+
+		void register(SocketChannel s) {
+			pending.add(s);
+			selector.wakeup();
+		}
+
+		public void run() {
+			while (true) {
+				try {
+					selector.select();
+
+					SocketChannel s;
+					while ((s = pending.poll()) != null) {
+						s.register(selector, SelectionKey.OP_READ, new Connection(handler));
+						ConnectionStats.opened();
+					}
+
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						try {
+							if (key.isValid() && key.isReadable())
+								read(key);
+							if (key.isValid() && key.isWritable())
+								write(key);
+						}
+						catch (IOException e) {
+							close(key);
+						}
+					}
+				}
+				catch (IOException e) {
+					System.out.println("There are some errors");
+				}
+			}
+		}
+
+		void read(SelectionKey key) throws IOException {
+			SocketChannel s = (SocketChannel) key.channel();
+			Connection c = (Connection) key.attachment();
+
+			readBuf.clear();
+			int n = s.read(readBuf);
+			if (n < 0) {
+				close(key);
+				return;
+			}
+			readBuf.flip();
+			c.received(readBuf);
+			write(key);
+		}
+
+		void write(SelectionKey key) throws IOException {
+			SocketChannel s = (SocketChannel) key.channel();
+			Connection c = (Connection) key.attachment();
+
+			c.out.flip();
+			s.write(c.out);
+			c.out.compact();
+
+			if (c.out.position() > HIGH_WATER) {
+				key.interestOps(SelectionKey.OP_WRITE);
+			}
+			else if (c.out.position() > 0) {
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+			else if (c.quit) {
+				close(key);
+			}
+			else {
+				key.interestOps(SelectionKey.OP_READ);
+			}
+		}
+
+		void close(SelectionKey key) {
+			key.cancel();
+			ConnectionStats.closed();
+			try {
+				key.channel().close();
+			}
+			catch (IOException e) {
+			}
+		}
+	}
+
+	// Per-client state: the unfinished message read so far and the replies not yet written.
+	// A connection speaks lines until its first message asks for binary frames.
+	static class Connection {
+		final MessageHandler handler;
+		byte[] line = new byte[256];
+		int lineLength;
+		ByteBuffer out = ByteBuffer.allocate(1024);
+		boolean first = true;
+		boolean binary;
+		int frameLength = -1;
+		boolean quit;
+
+		Connection(MessageHandler handler) {
+			this.handler = handler;
+		}
+
+		void received(ByteBuffer in) throws IOException {
+			while (in.hasRemaining() && !quit) {
+				if (binary)
+					receivedFrame(in);
+				else
+					receivedLine(in);
+			}
+		}
+
+		// reads bytes until one line is complete or the buffer is empty
+		void receivedLine(ByteBuffer in) throws IOException {
+			while (in.hasRemaining()) {
+				byte b = in.get();
+				if (b == '\n') {
+					int end = lineLength;
+					if (end > 0 && line[end - 1] == '\r')
+						end--;
+					lineLength = 0;
+					onMessage(new String(line, 0, end, StandardCharsets.UTF_8));
+					return;
+				}
+				ensureCapacity(lineLength + 1);
+				line[lineLength++] = b;
+			}
+		}
+
+		// copies the 4-byte header, then the payload, in bulk
+		void receivedFrame(ByteBuffer in) throws IOException {
+			int wanted = frameLength < 0 ? 4 : frameLength;
+			ensureCapacity(wanted);
+			int n = Math.min(wanted - lineLength, in.remaining());
+			in.get(line, lineLength, n);
+			lineLength += n;
+			if (lineLength < wanted)
+				return;
+
+			lineLength = 0;
+			if (frameLength < 0) {
+				frameLength = ByteBuffer.wrap(line, 0, 4).getInt();
+				if (frameLength < 0 || frameLength > MessageCodec.MAX_MESSAGE)
+					throw new IOException("Bad frame length: " + frameLength);
+				if (frameLength > 0)
+					return;
+			}
+			String message = new String(line, 0, frameLength, StandardCharsets.UTF_8);
+			frameLength = -1;
+			onMessage(message);
+		}
+
+		void ensureCapacity(int length) throws IOException {
+			if (length > line.length) {
+				if (length > MessageCodec.MAX_MESSAGE)
+					throw new IOException("Message too long");
+				line = Arrays.copyOf(line, Math.max(length, line.length * 2));
+			}
+		}
+
+		void onMessage(String receivedMessage) {
+			boolean wasFirst = first;
+			first = false;
+			if (receivedMessage.equalsIgnoreCase("quit")) {
+				quit = true;
+			}
+			else if (wasFirst && receivedMessage.equals(MessageCodec.BINARY_HELLO)) {
+				send(MessageCodec.BINARY_ACK);
+				binary = true;
+			}
+			else {
+				// the handler runs on the event loop, so it must not block
+				send(handler.handle(receivedMessage));
+			}
+		}
+
+		void send(String message) {
+			byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+			if (out.remaining() < bytes.length + 4) {
+				ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length + 4));
+				out.flip();
+				bigger.put(out);
+				out = bigger;
+			}
+			if (binary)
+				out.putInt(bytes.length).put(bytes);
+			else
+				out.put(bytes).put((byte) '\n');
+		}
+	}
+}
@@ -0,0 +1,154 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+// Runs a function on every line of a large file using all cores. The file is cut
+// into chunks that end right after a '\n', each chunk is memory-mapped and scanned
+// by a fork/join task, and the results come back in the order of the lines.
+public class ParallelLineReader {
+    static final long CHUNK_SIZE = 32L << 20;
+
+    public static <R> List<R> map(Path path, Function<String, R> fn) throws IOException {
+        return map(path, fn, ForkJoinPool.commonPool(), CHUNK_SIZE);
+    }
+
+    public static <R> List<R> map(Path path, Function<String, R> fn, ForkJoinPool pool, long chunkSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> chunks = split(channel, chunkSize);
+            return pool.invoke(new ChunkTask<>(channel, chunks, 0, chunks.size(), fn));
+        }
+    }
+
+    // Chunk boundaries are moved forward to just after the next '\n', so no line is cut in two.
+    static List<long[]> split(FileChannel channel, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(8 * 1024);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(start + chunkSize, size);
+            while (end < size) {
+                probe.clear();
+                int n = channel.read(probe, end);
+                int i = 0;
+                while (i < n && probe.get(i) != '\n')
+                    i++;
+                end += i;
+                if (i < n) {
+                    end++; // keep the '\n' in this chunk
+                    break;
+                }
+            }
+            if (end - start > Integer.MAX_VALUE)
+                throw new IOException("A line longer than 2 GB starts at " + start);
+            chunks.add(new long[] { start, end });
+            start = end;
+        }
+        return chunks;
+    }
+
+    // a ForkJoinTask is Serializable, but these tasks are never serialized
+    @SuppressWarnings("serial")
+    static class ChunkTask<R> extends RecursiveTask<List<R>> {
+        private static final ThreadLocal<byte[]> lineBuffer = ThreadLocal.withInitial(() -> new byte[256]);
+
+        final FileChannel channel;
+        final List<long[]> chunks;
+        final int from, to;
+        final Function<String, R> fn;
+
+        ChunkTask(FileChannel channel, List<long[]> chunks, int from, int to, Function<String, R> fn) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.fn = fn;
+        }
+
+        protected List<R> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask<R> left = new ChunkTask<>(channel, chunks, from, middle, fn);
+                ChunkTask<R> right = new ChunkTask<>(channel, chunks, middle, to, fn);
+                left.fork();
+                List<R> results = right.compute();
+                List<R> leftResults = left.join();
+                // left comes first in the file
+                leftResults.addAll(results);
+                return leftResults;
+            }
+            List<R> results = new ArrayList<>();
+            if (from == to)
+                return results;
+            try {
+                long[] chunk = chunks.get(from);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                readLines(buf, results);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return results;
+        }
+
+        void readLines(MappedByteBuffer buf, List<R> results) {
+            byte[] line = lineBuffer.get();
+            int length = 0;
+            while (buf.hasRemaining()) {
+                byte b = buf.get();
+                if (b == '\n') {
+                    results.add(fn.apply(decode(line, length)));
+                    length = 0;
+                } else {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                        lineBuffer.set(line);
+                    }
+                    line[length++] = b;
+                }
+            }
+            if (length > 0) // the last line of the file may have no '\n'
+                results.add(fn.apply(decode(line, length)));
+        }
+
+        static String decode(byte[] line, int length) {
+            if (length > 0 && line[length - 1] == '\r')
+                length--;
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    // java ParallelLineReader data.txt : counts lines and characters like BufferedReaderDemo reads them
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "data.txt");
+
+        long start = System.nanoTime();
+        long lines = 0, chars = 0;
+        try (BufferedReader br = new BufferedReader(new FileReader(path.toFile()))) {
+            String str;
+            while ((str = br.readLine()) != null) {
+                lines++;
+                chars += str.length();
+            }
+        }
+        System.out.printf("BufferedReader:     %d lines, %d chars in %d ms%n", lines, chars, (System.nanoTime() - start) / 1_000_000);
+
+        start = System.nanoTime();
+        List<Integer> lengths = map(path, String::length);
+        long total = 0;
+        for (int length : lengths)
+            total += length;
+        System.out.printf("ParallelLineReader: %d lines, %d chars in %d ms on %d threads%n", lengths.size(), total,
+                (System.nanoTime() - start) / 1_000_000, ForkJoinPool.commonPool().getParallelism());
+    }
+}
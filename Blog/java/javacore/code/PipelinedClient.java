@@ -0,0 +1,158 @@
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps up to `window` requests in flight on one connection. The writer thread
+// writes everything queued so far and flushes once per batch; the reader thread
+// matches each reply line with the oldest request, because the server answers in order.
+public class PipelinedClient implements Closeable {
+	private static final Request QUIT = new Request("quit");
+
+	private final Socket s;
+	private final MessageCodec codec;
+	private final Semaphore window;
+	private final BlockingQueue<Request> outgoing = new LinkedBlockingQueue<>();
+	private final Queue<Request> inFlight = new ConcurrentLinkedQueue<>();
+	private final Thread writer = new Thread(this::writeLoop, "pipeline-writer");
+	private final Thread reader = new Thread(this::readLoop, "pipeline-reader");
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private volatile boolean closed;
+	private volatile boolean quitSent;
+	// why the connection stopped working, if it did
+	private volatile Exception failure;
+	private final AtomicBoolean windowOpened = new AtomicBoolean();
+
+	// codec is "line" or "binary", see MessageCodec
+	public PipelinedClient(String host, int port, int window, String codec) throws IOException {
+		s = new Socket(host, port);
+		s.setTcpNoDelay(true);
+		this.codec = MessageCodec.connect(s, codec);
+		this.window = new Semaphore(window);
+		writer.setDaemon(true);
+		reader.setDaemon(true);
+		writer.start();
+		reader.start();
+	}
+
+	// Blocks only while `window` requests are already waiting for their reply.
+	// After a connection failure it returns a future that has already failed.
+	public CompletableFuture<String> send(String message) throws InterruptedException {
+		if (failure != null)
+			return CompletableFuture.failedFuture(failure);
+		if (closed)
+			throw new IllegalStateException("Client is closed");
+		window.acquire();
+		if (failure != null)
+			return CompletableFuture.failedFuture(failure);
+		Request r = new Request(message);
+		outgoing.add(r);
+		// failAll may have drained the queue just before the add
+		if (failure != null)
+			failAll(failure);
+		return r.reply;
+	}
+
+	public long messagesSent() {
+		return sent.get();
+	}
+
+	public long flushes() {
+		return flushes.get();
+	}
+
+	private void writeLoop() {
+		List<Request> batch = new ArrayList<>();
+		try {
+			while (true) {
+				batch.add(outgoing.take());
+				outgoing.drainTo(batch);
+				boolean quit = false;
+				for (Request r : batch) {
+					if (r == QUIT)
+						quit = true;
+					else
+						inFlight.add(r);
+					codec.write(r.message);
+				}
+				codec.flush();
+				flushes.incrementAndGet();
+				sent.addAndGet(quit ? batch.size() - 1 : batch.size());
+				if (quit)
+					return;
+				batch.clear();
+			}
+		}
+		catch (IOException | InterruptedException e) {
+			failAll(e);
+		}
+	}
+
+	private void readLoop() {
+		try {
+			String receivedMessage;
+			while ((receivedMessage = codec.read()) != null) {
+				Request r = inFlight.poll();
+				if (r == null)
+					throw new IOException("Reply without a request: " + receivedMessage);
+				r.reply.complete(receivedMessage);
+				window.release();
+			}
+			failAll(new EOFException("Server closed the connection"));
+		}
+		catch (IOException e) {
+			failAll(e);
+		}
+	}
+
+	private void failAll(Exception e) {
+		if (failure == null)
+			failure = e;
+		closed = true;
+		// wake every send() waiting for the window; permits don't matter any more.
+		// Only once: failAll runs on several threads, and the permits would overflow.
+		if (windowOpened.compareAndSet(false, true))
+			window.release(Integer.MAX_VALUE / 2);
+		Request r;
+		while ((r = inFlight.poll()) != null)
+			r.reply.completeExceptionally(e);
+		while ((r = outgoing.poll()) != null)
+			r.reply.completeExceptionally(e);
+	}
+
+	// Sends "quit" after everything already queued, then waits for the last replies.
+	public void close() throws IOException {
+		if (quitSent)
+			return;
+		quitSent = true;
+		closed = true;
+		outgoing.add(QUIT);
+		try {
+			// after a failure the reader may never see the end of the stream; closing the socket stops it
+			if (failure == null) {
+				writer.join();
+				reader.join();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			s.close();
+		}
+	}
+
+	static class Request {
+		final String message;
+		final CompletableFuture<String> reply = new CompletableFuture<>();
+
+		Request(String message) {
+			this.message = message;
+		}
+	}
+}
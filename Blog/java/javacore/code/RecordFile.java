@@ -0,0 +1,255 @@
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.DoubleSummaryStatistics;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Writes records of typed fields (the int, double, boolean and UTF string of
+// DataOutputStreamDemo) to a file and reads them back as a lazy Stream.
+// Records are encoded into a 64 KB block in memory and every block is written
+// with one call, so no field costs a system call of its own.
+//
+// File:   [magic "RECF"][field count: short]([name: UTF][type: byte])... block...
+// Block:  [record count: int][byte length: int][records]
+public class RecordFile {
+    static final int MAGIC = 0x52454346;
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    public enum FieldType { INT, LONG, DOUBLE, BOOLEAN, UTF }
+
+    public static class Schema {
+        final String[] names;
+        final FieldType[] types;
+
+        public Schema(String[] names, FieldType[] types) {
+            if (names.length != types.length)
+                throw new IllegalArgumentException("Every field needs a name and a type");
+            this.names = names.clone();
+            this.types = types.clone();
+        }
+
+        public int size() {
+            return types.length;
+        }
+
+        public String name(int field) {
+            return names[field];
+        }
+
+        public FieldType type(int field) {
+            return types[field];
+        }
+    }
+
+    public static class Writer implements Closeable {
+        private final Schema schema;
+        private final DataOutputStream file;
+        private final Block block = new Block(BLOCK_SIZE + 1024);
+        private final DataOutputStream record = new DataOutputStream(block);
+        private int recordsInBlock;
+
+        public Writer(Path path, Schema schema) throws IOException {
+            this.schema = schema;
+            this.file = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BLOCK_SIZE));
+            file.writeInt(MAGIC);
+            file.writeShort(schema.size());
+            for (int i = 0; i < schema.size(); i++) {
+                file.writeUTF(schema.name(i));
+                file.writeByte(schema.type(i).ordinal());
+            }
+        }
+
+        public void write(Object... values) throws IOException {
+            if (values.length != schema.size())
+                throw new IllegalArgumentException("Expected " + schema.size() + " fields, got " + values.length);
+            // a field of the wrong type (or a string too long for writeUTF) fails halfway through
+            // the record; drop the fields already written, or every later record would be misread
+            int start = block.size();
+            try {
+                writeFields(values);
+            } catch (IOException | RuntimeException e) {
+                block.truncate(start);
+                throw e;
+            }
+            recordsInBlock++;
+            if (block.size() >= BLOCK_SIZE)
+                flushBlock();
+        }
+
+        private void writeFields(Object[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                switch (schema.type(i)) {
+                    case INT:
+                        record.writeInt((Integer) values[i]);
+                        break;
+                    case LONG:
+                        record.writeLong((Long) values[i]);
+                        break;
+                    case DOUBLE:
+                        record.writeDouble((Double) values[i]);
+                        break;
+                    case BOOLEAN:
+                        record.writeBoolean((Boolean) values[i]);
+                        break;
+                    case UTF:
+                        record.writeUTF((String) values[i]);
+                        break;
+                }
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (recordsInBlock == 0)
+                return;
+            file.writeInt(recordsInBlock);
+            file.writeInt(block.size());
+            block.writeTo(file);
+            block.reset();
+            recordsInBlock = 0;
+        }
+
+        public void close() throws IOException {
+            flushBlock();
+            file.close();
+        }
+    }
+
+    static class Block extends ByteArrayOutputStream {
+        Block(int size) {
+            super(size);
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
+
+    public static Schema readSchema(DataInputStream file) throws IOException {
+        if (file.readInt() != MAGIC)
+            throw new IOException("Not a record file");
+        int count = file.readShort();
+        String[] names = new String[count];
+        FieldType[] types = new FieldType[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = file.readUTF();
+            types[i] = FieldType.values()[file.readByte()];
+        }
+        return new Schema(names, types);
+    }
+
+    // The records are read one block at a time, while the stream is consumed.
+    // Close the stream (e.g. with try-with-resources) to close the file.
+    public static Stream<Object[]> read(Path path) throws IOException {
+        DataInputStream file = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BLOCK_SIZE));
+        try {
+            Schema schema = readSchema(file);
+            BlockReader reader = new BlockReader(file, schema);
+            return StreamSupport.stream(reader, false).onClose(() -> {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    static class BlockReader extends Spliterators.AbstractSpliterator<Object[]> {
+        private final DataInputStream file;
+        private final Schema schema;
+        private byte[] block = new byte[BLOCK_SIZE + 1024];
+        private DataInputStream records;
+        private int remaining;
+
+        BlockReader(DataInputStream file, Schema schema) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.file = file;
+            this.schema = schema;
+        }
+
+        public boolean tryAdvance(Consumer<? super Object[]> action) {
+            try {
+                if (remaining == 0 && !nextBlock())
+                    return false;
+                Object[] values = new Object[schema.size()];
+                for (int i = 0; i < values.length; i++) {
+                    switch (schema.type(i)) {
+                        case INT:
+                            values[i] = records.readInt();
+                            break;
+                        case LONG:
+                            values[i] = records.readLong();
+                            break;
+                        case DOUBLE:
+                            values[i] = records.readDouble();
+                            break;
+                        case BOOLEAN:
+                            values[i] = records.readBoolean();
+                            break;
+                        case UTF:
+                            values[i] = records.readUTF();
+                            break;
+                    }
+                }
+                remaining--;
+                action.accept(values);
+                return true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private boolean nextBlock() throws IOException {
+            int count;
+            try {
+                count = file.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            int length = file.readInt();
+            if (length > block.length)
+                block = new byte[length];
+            file.readFully(block, 0, length);
+            records = new DataInputStream(new ByteArrayInputStream(block, 0, length));
+            remaining = count;
+            return true;
+        }
+    }
+
+    // java RecordFile [records] : writes and reads back records like DataOutputStreamDemo's
+    public static void main(String[] args) throws IOException {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        Path path = Paths.get("records.dat");
+        Schema schema = new Schema(new String[] { "id", "price", "active", "name" },
+                new FieldType[] { FieldType.INT, FieldType.DOUBLE, FieldType.BOOLEAN, FieldType.UTF });
+
+        long start = System.nanoTime();
+        try (Writer writer = new Writer(path, schema)) {
+            for (int i = 0; i < n; i++) {
+                writer.write(i, -67.76 * i, i % 2 == 0, "Some text");
+            }
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        DoubleSummaryStatistics prices;
+        try (Stream<Object[]> records = read(path)) {
+            prices = records.mapToDouble(r -> (Double) r[1]).summaryStatistics();
+        }
+        long readNanos = System.nanoTime() - start;
+
+        System.out.printf("Wrote %d records in %d ms (%.1f M/s), %d bytes%n", n, writeNanos / 1_000_000,
+                n / (writeNanos / 1e9) / 1e6, Files.size(path));
+        System.out.printf("Read %d records in %d ms (%.1f M/s), sum of prices %.2f%n", prices.getCount(),
+                readNanos / 1_000_000, prices.getCount() / (readNanos / 1e9) / 1e6, prices.getSum());
+        Files.delete(path);
+    }
+}
@@ -0,0 +1,204 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Request/response over UDP that survives lost packets. Every request carries a
+// sequence number and is sent again if its response doesn't arrive in time; the
+// timeout adapts to the measured round-trip time. Up to `window` requests can be
+// waiting for their response at once. Pair it with ReliableUdpServer.
+//
+// A client picks a random session id, so a server that still remembers an
+// earlier run on the same port doesn't take the new requests for duplicates.
+//
+// Packet: [type: 1 byte][session: 8 bytes][sequence: 4 bytes][UTF-8 payload]
+public class ReliableUdpClient implements Closeable {
+	static final byte REQUEST = 0;
+	static final byte RESPONSE = 1;
+	static final int HEADER = 13;
+	static final int MAX_PACKET = 65507;
+
+	private final DatagramSocket socket;
+	private final InetSocketAddress server;
+	private final Semaphore window;
+	private final int maxAttempts;
+	private final RttEstimator rtt = new RttEstimator();
+	private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+	private final long session = ThreadLocalRandom.current().nextLong();
+	private final AtomicInteger nextSequence = new AtomicInteger();
+	private final AtomicLong retransmits = new AtomicLong();
+	private final AtomicBoolean closed = new AtomicBoolean();
+	private final Thread receiver = new Thread(this::receiveLoop, "udp-receiver");
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "udp-retransmit");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public ReliableUdpClient(int localPort, InetSocketAddress server, int window, int maxAttempts) throws SocketException {
+		this.socket = new DatagramSocket(localPort);
+		this.server = server;
+		this.window = new Semaphore(window);
+		this.maxAttempts = maxAttempts;
+		receiver.setDaemon(true);
+		receiver.start();
+		timer.scheduleWithFixedDelay(this::checkTimeouts, 5, 5, TimeUnit.MILLISECONDS);
+	}
+
+	// Blocks only while `window` requests are already in flight, or until close().
+	public CompletableFuture<String> send(String message) throws IOException, InterruptedException {
+		byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+		if (payload.length > MAX_PACKET - HEADER)
+			throw new IOException("Message too long for one datagram: " + payload.length + " bytes");
+		if (closed.get())
+			throw new SocketException("Client closed");
+		window.acquire();
+		if (closed.get())
+			throw new SocketException("Client closed");
+
+		int sequence = nextSequence.getAndIncrement();
+		ByteBuffer packet = ByteBuffer.allocate(HEADER + payload.length);
+		packet.put(REQUEST).putLong(session).putInt(sequence).put(payload);
+		Pending p = new Pending(sequence, packet.array());
+		synchronized (p) {
+			pending.put(sequence, p);
+			transmit(p);
+		}
+		// close() may have failed the pending requests just before the put
+		if (closed.get() && pending.remove(sequence, p))
+			p.reply.completeExceptionally(new SocketException("Client closed"));
+		return p.reply;
+	}
+
+	public long retransmits() {
+		return retransmits.get();
+	}
+
+	public long currentTimeoutMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(rtt.timeout());
+	}
+
+	private void transmit(Pending p) {
+		long now = System.nanoTime();
+		if (p.attempts == 0)
+			p.firstSent = now;
+		p.attempts++;
+		// back off exponentially while the same request keeps getting lost; the shift is
+		// limited so that it can't overflow, and MAX_TIMEOUT is reached long before
+		p.deadline = now + Math.min(rtt.timeout() << Math.min(p.attempts - 1, 16), RttEstimator.MAX_TIMEOUT);
+		try {
+			socket.send(new DatagramPacket(p.packet, p.packet.length, server));
+		}
+		catch (IOException e) {
+			// treated like a lost packet: the timer will try again
+		}
+	}
+
+	private void checkTimeouts() {
+		long now = System.nanoTime();
+		for (Pending p : pending.values()) {
+			synchronized (p) {
+				if (p.deadline - now > 0 || p.reply.isDone())
+					continue;
+				if (p.attempts >= maxAttempts) {
+					if (pending.remove(p.sequence, p)) {
+						p.reply.completeExceptionally(new SocketTimeoutException("No response after " + p.attempts + " attempts"));
+						window.release();
+					}
+				}
+				else {
+					retransmits.incrementAndGet();
+					transmit(p);
+				}
+			}
+		}
+	}
+
+	private void receiveLoop() {
+		byte[] buf = new byte[MAX_PACKET];
+		DatagramPacket packet = new DatagramPacket(buf, buf.length);
+		while (!socket.isClosed()) {
+			try {
+				packet.setLength(buf.length);
+				socket.receive(packet);
+				if (packet.getLength() < HEADER || buf[0] != RESPONSE)
+					continue;
+				ByteBuffer header = ByteBuffer.wrap(buf, 1, HEADER - 1);
+				// a late answer to an earlier run on this port
+				if (header.getLong() != session)
+					continue;
+				int sequence = header.getInt();
+				Pending p = pending.remove(sequence);
+				if (p == null)
+					continue; // a duplicate, or the response to a request we gave up on
+				synchronized (p) {
+					// Karn's rule: a retransmitted request gives an ambiguous sample
+					if (p.attempts == 1)
+						rtt.sample(System.nanoTime() - p.firstSent);
+				}
+				p.reply.complete(new String(buf, HEADER, packet.getLength() - HEADER, StandardCharsets.UTF_8));
+				window.release();
+			}
+			catch (IOException e) {
+				// socket closed
+			}
+		}
+	}
+
+	public void close() {
+		if (!closed.compareAndSet(false, true))
+			return;
+		timer.shutdownNow();
+		socket.close();
+		for (Pending p : pending.values())
+			p.reply.completeExceptionally(new SocketException("Client closed"));
+		// wake the senders waiting for the window; they see `closed` and fail
+		window.release(Integer.MAX_VALUE / 2);
+	}
+
+	static class Pending {
+		final int sequence;
+		final byte[] packet;
+		final CompletableFuture<String> reply = new CompletableFuture<>();
+		long firstSent;
+		long deadline;
+		int attempts;
+
+		Pending(int sequence, byte[] packet) {
+			this.sequence = sequence;
+			this.packet = packet;
+		}
+	}
+
+	// Retransmission timeout from smoothed RTT and RTT variance, as TCP does (RFC 6298).
+	static class RttEstimator {
+		static final long MIN_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(10);
+		static final long MAX_TIMEOUT = TimeUnit.SECONDS.toNanos(2);
+
+		private long srtt;
+		private long rttvar;
+		private long timeout = TimeUnit.MILLISECONDS.toNanos(250);
+
+		synchronized void sample(long rtt) {
+			if (srtt == 0) {
+				srtt = rtt;
+				rttvar = rtt / 2;
+			}
+			else {
+				rttvar = (3 * rttvar + Math.abs(srtt - rtt)) / 4;
+				srtt = (7 * srtt + rtt) / 8;
+			}
+			timeout = Math.max(MIN_TIMEOUT, Math.min(srtt + 4 * rttvar, MAX_TIMEOUT));
+		}
+
+		synchronized long timeout() {
+			return timeout;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Answers ReliableUdpClient requests. When a request arrives again because its
+// response was lost, the cached response is sent instead of running the handler
+// a second time, so each request is handled at most once.
+public class ReliableUdpServer {
+	private final DatagramSocket socket;
+	private final MessageHandler handler;
+	private final double loss;
+	private final Map<RequestId, byte[]> responses;
+	private long duplicates;
+
+	// loss is the fraction of incoming packets to drop on purpose, to try the retransmission
+	public ReliableUdpServer(int port, MessageHandler handler, int cacheSize, double loss) throws SocketException {
+		this.socket = new DatagramSocket(port);
+		this.handler = handler;
+		this.loss = loss;
+		this.responses = new LinkedHashMap<>(cacheSize * 2, 0.75f, false) {
+			protected boolean removeEldestEntry(Map.Entry<RequestId, byte[]> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	public void run() throws IOException {
+		byte[] buf = new byte[ReliableUdpClient.MAX_PACKET];
+		DatagramPacket receivedPacket = new DatagramPacket(buf, buf.length);
+		while (true) {
+			receivedPacket.setLength(buf.length);
+			socket.receive(receivedPacket);
+			if (loss > 0 && ThreadLocalRandom.current().nextDouble() < loss)
+				continue;
+			if (receivedPacket.getLength() < ReliableUdpClient.HEADER || buf[0] != ReliableUdpClient.REQUEST)
+				continue;
+
+			ByteBuffer header = ByteBuffer.wrap(buf, 1, ReliableUdpClient.HEADER - 1);
+			long session = header.getLong();
+			int sequence = header.getInt();
+			RequestId id = new RequestId(receivedPacket.getSocketAddress(), session, sequence);
+			byte[] response = responses.get(id);
+			if (response != null) {
+				duplicates++;
+			}
+			else {
+				String receivedMessage = new String(buf, ReliableUdpClient.HEADER,
+					receivedPacket.getLength() - ReliableUdpClient.HEADER, StandardCharsets.UTF_8);
+				byte[] payload = handler.handle(receivedMessage).getBytes(StandardCharsets.UTF_8);
+				response = ByteBuffer.allocate(ReliableUdpClient.HEADER + payload.length)
+					.put(ReliableUdpClient.RESPONSE).putLong(session).putInt(sequence).put(payload).array();
+				responses.put(id, response);
+			}
+			socket.send(new DatagramPacket(response, response.length, receivedPacket.getSocketAddress()));
+		}
+	}
+
+	public long duplicates() {
+		return duplicates;
+	}
+
+	static class RequestId {
+		final SocketAddress client;
+		final long session;
+		final int sequence;
+
+		RequestId(SocketAddress client, long session, int sequence) {
+			this.client = client;
+			this.session = session;
+			this.sequence = sequence;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof RequestId))
+				return false;
+			RequestId other = (RequestId) o;
+			return sequence == other.sequence && session == other.session && client.equals(other.client);
+		}
+
+		public int hashCode() {
+			return Objects.hash(client, session, sequence);
+		}
+	}
+}
@@ -2,16 +2,52 @@ import java.io.*;
 import java.net.*;
 
 public class TCPClient {
+	// java TCPClient                     : type a message, wait for its reply, repeat
+	// java TCPClient pipeline [window=n] : send every line of the input without waiting,
+	//                                      keeping up to n requests in flight
+	// Add codec=binary to switch the connection to length-prefixed frames.
 	public static void main(String[] arg) {
+		String mode = arg.length > 0 ? arg[0] : "interactive";
+		String codec = option(arg, "codec", "line");
+		if (mode.equalsIgnoreCase("pipeline"))
+			runPipelined(Integer.parseInt(option(arg, "window", "128")), codec);
+		else
+			runInteractive(codec);
+	}
+
+	static String option(String[] arg, String name, String defaultValue) {
+		for (String a : arg) {
+			if (a.startsWith(name + "="))
+				return a.substring(name.length() + 1);
+		}
+		return defaultValue;
+	}
+
+	static void runPipelined(int window, String codec) {
+		try {
+			PipelinedClient client = new PipelinedClient("localhost", 3200, window, codec);
+			// closing waits for the last replies, so the counts are printed afterwards
+			try (client) {
+				BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+				String sentMessage;
+				while ((sentMessage = in.readLine()) != null && !sentMessage.equalsIgnoreCase("quit")) {
+					// replies complete in order on the reader thread, so they print in order too
+					client.send(sentMessage).thenAccept(receivedMessage -> System.out.println("Received : " + receivedMessage));
+				}
+			}
+			System.out.println("Sent " + client.messagesSent() + " messages in " + client.flushes() + " flushes");
+		}
+		catch (IOException | InterruptedException e) {
+			System.out.println("There are some errors");
+		}
+	}
+
+	static void runInteractive(String codec) {
 		try {
 			Socket s = new Socket("localhost", 3200);
 			System.out.println(s.getPort());
 			
-			InputStream is = s.getInputStream();
-			BufferedReader br = new BufferedReader(new InputStreamReader(is));
-     
-			OutputStream os = s.getOutputStream();
-			BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os));
+			MessageCodec mc = MessageCodec.connect(s, codec);
 			
 			String sentMessage = "";
 			String receivedMessage;
@@ -21,22 +57,20 @@ public class TCPClient {
 			do {
 				DataInputStream din = new DataInputStream(System.in);
 				sentMessage = din.readLine();
-				bw.write(sentMessage);
-				bw.newLine();
-				bw.flush();
+				mc.write(sentMessage);
+				mc.flush();
 				
 				if (sentMessage.equalsIgnoreCase("quit"))
 					break;
 				else {
-					receivedMessage = br.readLine();
+					receivedMessage = mc.read();
 					System.out.println("Received : " + receivedMessage);					
 				}
 				
 			}
 			while(true);
 			    
-			bw.close();
-			br.close();
+			s.close();
 		}
 		catch(IOException e) {
 			System.out.println("There are some errors");
@@ -0,0 +1,197 @@
+import java.io.*;
+import java.net.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// A bounded pool of persistent connections to TCPServer. Callers borrow a connection,
+// make any number of request/reply exchanges on it and give it back, so the TCP
+// handshake and the buffers are paid once per connection instead of once per conversation.
+//
+//	try (TCPConnectionPool pool = new TCPConnectionPool("localhost", 3200, 8, 30_000, "line")) {
+//		TCPConnectionPool.Connection c = pool.borrow(1000);
+//		try {
+//			String reply = c.request("GET key");
+//		}
+//		finally {
+//			pool.release(c);
+//		}
+//	}
+public class TCPConnectionPool implements Closeable {
+	// connections used more recently than this are trusted without the blocking probe
+	static final long PROBE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final String host;
+	private final int port;
+	private final String codec;
+	private final long maxIdleMillis;
+	private final Semaphore permits;
+	private final Deque<Connection> idle = new ArrayDeque<>();
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed;
+
+	public TCPConnectionPool(String host, int port, int maxConnections, long maxIdleMillis, String codec) {
+		this.host = host;
+		this.port = port;
+		this.codec = codec;
+		this.maxIdleMillis = maxIdleMillis;
+		this.permits = new Semaphore(maxConnections, true);
+		this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "pool-evictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1, maxIdleMillis / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	// Waits up to timeoutMillis for a free slot; reuses the most recently returned
+	// healthy connection or opens a new one.
+	public Connection borrow(long timeoutMillis) throws IOException, InterruptedException {
+		if (closed)
+			throw new IllegalStateException("Pool is closed");
+		if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS))
+			throw new IOException("No connection available after " + timeoutMillis + " ms");
+		try {
+			Connection c;
+			while ((c = pollIdle()) != null) {
+				if (c.isHealthy())
+					return c;
+				c.closeQuietly();
+			}
+			return new Connection(host, port, codec);
+		}
+		catch (IOException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	// A connection that failed during a request must be released with broken = true.
+	public void release(Connection c, boolean broken) {
+		try {
+			if (broken || closed) {
+				c.closeQuietly();
+			}
+			else {
+				c.lastUsed = System.nanoTime();
+				synchronized (idle) {
+					idle.push(c);
+				}
+			}
+		}
+		finally {
+			permits.release();
+		}
+	}
+
+	public void release(Connection c) {
+		release(c, false);
+	}
+
+	public int idleCount() {
+		synchronized (idle) {
+			return idle.size();
+		}
+	}
+
+	private Connection pollIdle() {
+		synchronized (idle) {
+			return idle.pollFirst();
+		}
+	}
+
+	// the oldest connections are at the end of the deque
+	private void evictIdle() {
+		long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+		while (true) {
+			Connection c;
+			synchronized (idle) {
+				c = idle.peekLast();
+				if (c == null || c.lastUsed - deadline > 0)
+					return;
+				idle.pollLast();
+			}
+			c.closeQuietly();
+		}
+	}
+
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		Connection c;
+		while ((c = pollIdle()) != null)
+			c.closeQuietly();
+	}
+
+	public static class Connection {
+		private final Socket s;
+		private final BufferedInputStream in;
+		private final MessageCodec mc;
+		long lastUsed = System.nanoTime();
+
+		Connection(String host, int port, String codec) throws IOException {
+			s = new Socket(host, port);
+			s.setTcpNoDelay(true);
+			s.setKeepAlive(true);
+			in = new BufferedInputStream(s.getInputStream());
+			// negotiate over the same buffered stream the health check reads
+			mc = MessageCodec.connect(in, s.getOutputStream(), codec);
+		}
+
+		public String request(String message) throws IOException {
+			mc.write(message);
+			mc.flush();
+			String reply = mc.read();
+			if (reply == null)
+				throw new EOFException("Server closed the connection");
+			return reply;
+		}
+
+		// An idle connection must have nothing to read. Only a connection that has been idle
+		// for a while is probed: a 1 ms read that times out means the peer is still there,
+		// -1 or unexpected data means it's unusable. A recently used one skips the probe,
+		// so borrowing it costs no wait; a dead one then fails in request().
+		boolean isHealthy() {
+			if (s.isClosed() || s.isInputShutdown() || s.isOutputShutdown())
+				return false;
+			try {
+				if (in.available() > 0)
+					return false;
+				if (System.nanoTime() - lastUsed < PROBE_AFTER_NANOS)
+					return true;
+				s.setSoTimeout(1);
+				try {
+					in.read();
+					return false;
+				}
+				catch (SocketTimeoutException e) {
+					return true;
+				}
+				finally {
+					s.setSoTimeout(0);
+				}
+			}
+			catch (IOException e) {
+				return false;
+			}
+		}
+
+		void closeQuietly() {
+			try {
+				mc.write("quit");
+				mc.flush();
+			}
+			catch (IOException e) {
+			}
+			try {
+				s.close();
+			}
+			catch (IOException e) {
+			}
+		}
+	}
+}
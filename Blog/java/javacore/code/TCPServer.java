@@ -1,48 +1,101 @@
 import java.io.*;
 import java.net.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TCPServer {
+	static final int PORT = 3200;
+
+	// java TCPServer                  : one client at a time, replies are typed on the console
+	// java TCPServer nio [loops=n]    : many clients multiplexed by NioTCPServer
+	// java TCPServer virtual          : one virtual thread per client
+	// java TCPServer pool [threads=n] : clients share a fixed pool of platform threads
+	// Add stats=seconds to print the live connection count periodically, and
+	// handler=echo|upper|kv|console|<class name> to choose how replies are made
+	// (console is the default for the blocking mode, echo for the others).
 	public static void main(String[] arg) {
+		String mode = arg.length > 0 ? arg[0] : "blocking";
+		MessageHandler handler = MessageHandlers.get(option(arg, "handler", mode.equalsIgnoreCase("blocking") ? "console" : "echo"));
+		int stats = Integer.parseInt(option(arg, "stats", "0"));
+		if (stats > 0)
+			ConnectionStats.startReporter(stats);
 		try {
-			ServerSocket ss = new ServerSocket(3200);
-			do {
-				System.out.println("Waiting for a Client");
-			
-				Socket s = ss.accept();
-				
-				InputStream is = s.getInputStream();
-				BufferedReader br = new BufferedReader(new InputStreamReader(is));
-				
-				OutputStream os = s.getOutputStream();
-				BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os));
-
-				while (true) {
-					String receivedMessage = br.readLine();
-					System.out.println("Received : " + receivedMessage);
-					if (receivedMessage.equalsIgnoreCase("quit")) {
-						System.out.println("Client has left!");
-						break;
-					}
-					else {
-						DataInputStream din = new DataInputStream(System.in);
-						String k = din.readLine();
-						bw.write(k);
-						bw.newLine();
-						bw.flush();
-					}
-				}
-
-				bw.close();
-				br.close();
-
-                s.close();
+			if (mode.equalsIgnoreCase("nio")) {
+				int loops = Integer.parseInt(option(arg, "loops", "" + Runtime.getRuntime().availableProcessors()));
+				new NioTCPServer(PORT, loops, handler).run();
+			}
+			else if (mode.equalsIgnoreCase("virtual")) {
+				runExecutor(Executors.newVirtualThreadPerTaskExecutor(), handler);
+			}
+			else if (mode.equalsIgnoreCase("pool")) {
+				int threads = Integer.parseInt(option(arg, "threads", "200"));
+				runExecutor(Executors.newFixedThreadPool(threads), handler);
+			}
+			else {
+				runBlocking(handler);
 			}
-			while (true);
-			
-            
 		}
 		catch(IOException e) {
 			System.out.println("There are some errors");
 		}
 	}
+
+	static String option(String[] arg, String name, String defaultValue) {
+		for (String a : arg) {
+			if (a.startsWith(name + "="))
+				return a.substring(name.length() + 1);
+		}
+		return defaultValue;
+	}
+
+	static void runExecutor(ExecutorService executor, MessageHandler handler) throws IOException {
+		try (ServerSocket ss = new ServerSocket(PORT, 1024)) {
+			System.out.println("Waiting for clients");
+			while (true) {
+				Socket s = ss.accept();
+				s.setTcpNoDelay(true);
+				ConnectionStats.opened();
+				executor.execute(new ClientHandler(s, handler));
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	static void runBlocking(MessageHandler handler) throws IOException {
+		ServerSocket ss = new ServerSocket(PORT);
+		do {
+			System.out.println("Waiting for a Client");
+		
+			Socket s = ss.accept();
+			ConnectionStats.opened();
+			
+			MessageCodec codec = new LineCodec(s.getInputStream(), s.getOutputStream());
+			boolean first = true;
+
+			while (true) {
+				String receivedMessage = codec.read();
+				System.out.println("Received : " + receivedMessage);
+				if (receivedMessage == null || receivedMessage.equalsIgnoreCase("quit")) {
+					System.out.println("Client has left!");
+					break;
+				}
+				else if (first && receivedMessage.equals(MessageCodec.BINARY_HELLO)) {
+					codec.write(MessageCodec.BINARY_ACK);
+					codec.flush();
+					codec = new BinaryCodec(s.getInputStream(), s.getOutputStream());
+				}
+				else {
+					codec.write(handler.handle(receivedMessage));
+					codec.flush();
+				}
+				first = false;
+			}
+
+			s.close();
+			ConnectionStats.closed();
+		}
+		while (true);
+	}
 }
@@ -0,0 +1,118 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Runs many small tasks on a work-stealing ForkJoinPool. Every worker has its own
+// queue: a task submitted from a worker goes to that worker's queue, and an idle
+// worker steals from the others, so there is no single queue that all threads fight
+// over. Tasks are grouped, and a Group tells when all of its tasks have finished
+// (await or a callback), instead of polling isTerminated().
+public class TaskScheduler implements AutoCloseable {
+    private final ForkJoinPool pool;
+
+    public TaskScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public TaskScheduler(int parallelism) {
+        // asyncMode: each worker runs its own tasks in FIFO order, which suits tasks that are never joined
+        pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    public Group group() {
+        return new Group();
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    // number of tasks taken from another worker's queue
+    public long steals() {
+        return pool.getStealCount();
+    }
+
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // A set of tasks that finishes together, like a CountDownLatch whose count grows with
+    // every submit. The group is done once it is sealed (by seal or await) and every task
+    // has finished. Tasks may submit more tasks to their own group.
+    public class Group {
+        // one extra count for "not sealed yet", so the group can't finish while tasks are still being added
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private boolean sealed;
+
+        public Group submit(Runnable task) {
+            pending.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    finished();
+                }
+            });
+            return this;
+        }
+
+        // no more tasks from outside the group
+        public synchronized Group seal() {
+            if (!sealed) {
+                sealed = true;
+                finished();
+            }
+            return this;
+        }
+
+        // runs once every task has finished, on the thread that finished last
+        public Group onComplete(Runnable callback) {
+            done.whenComplete((v, e) -> callback.run());
+            return this;
+        }
+
+        // fails with the first exception thrown by a task
+        public CompletableFuture<Void> completion() {
+            return done;
+        }
+
+        public void await() throws InterruptedException, ExecutionException {
+            seal();
+            done.get();
+        }
+
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException {
+            seal();
+            try {
+                done.get(timeout, unit);
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+
+        private void finished() {
+            if (pending.decrementAndGet() == 0) {
+                Throwable e = failure.get();
+                if (e == null)
+                    done.complete(null);
+                else
+                    done.completeExceptionally(e);
+            }
+        }
+    }
+}
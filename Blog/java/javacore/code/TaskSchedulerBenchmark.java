@@ -0,0 +1,113 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// java TaskSchedulerBenchmark [tasks] [runs]
+// Runs the same short tasks on the fixed pool of 5 from ThreadPoolDemo (once waiting with
+// the old busy loop, once with awaitTermination) and on TaskScheduler. Prints wall time,
+// throughput, CPU time of the whole process and CPU time of the waiting main thread.
+public class TaskSchedulerBenchmark {
+    static final LongAdder sink = new LongAdder();
+
+    interface Run {
+        void run(int tasks) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int tasks = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.println(tasks + " tasks, " + Runtime.getRuntime().availableProcessors() + " CPU(s)");
+        for (int i = 0; i < runs; i++) {
+            // the first run is warm-up
+            boolean print = i > 0 || runs == 1;
+            measure("fixed(5) + busy wait", print, n -> {
+                ExecutorService executor = Executors.newFixedThreadPool(5);
+                for (int j = 0; j < n; j++)
+                    executor.execute(TaskSchedulerBenchmark::work);
+                executor.shutdown();
+                while (!executor.isTerminated()) {
+                }
+            }, tasks);
+            measure("fixed(5) + awaitTermination", print, n -> {
+                ExecutorService executor = Executors.newFixedThreadPool(5);
+                for (int j = 0; j < n; j++)
+                    executor.execute(TaskSchedulerBenchmark::work);
+                executor.shutdown();
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            }, tasks);
+            measure("fixed(5) + latch", print, n -> {
+                ExecutorService executor = Executors.newFixedThreadPool(5);
+                CountDownLatch latch = new CountDownLatch(n);
+                for (int j = 0; j < n; j++)
+                    executor.execute(() -> {
+                        work();
+                        latch.countDown();
+                    });
+                latch.await();
+                executor.shutdown();
+            }, tasks);
+            measure("TaskScheduler", print, n -> {
+                try (TaskScheduler scheduler = new TaskScheduler()) {
+                    TaskScheduler.Group group = scheduler.group();
+                    for (int j = 0; j < n; j++)
+                        group.submit(TaskSchedulerBenchmark::work);
+                    group.await();
+                }
+            }, tasks);
+            // tasks that split themselves, so the work is created on the workers' own queues
+            measure("TaskScheduler, forked", print, n -> {
+                try (TaskScheduler scheduler = new TaskScheduler()) {
+                    TaskScheduler.Group group = scheduler.group();
+                    group.submit(() -> split(group, 0, n));
+                    group.await();
+                }
+            }, tasks);
+            if (print)
+                System.out.println();
+        }
+    }
+
+    static void split(TaskScheduler.Group group, int from, int to) {
+        if (to - from <= 16) {
+            for (int i = from; i < to; i++)
+                work();
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        group.submit(() -> split(group, from, middle));
+        split(group, middle, to);
+    }
+
+    // a few microseconds of arithmetic
+    static void work() {
+        long x = 0;
+        for (int i = 0; i < 1000; i++)
+            x += i * 31L ^ x >>> 3;
+        sink.add(x);
+    }
+
+    static void measure(String name, boolean print, Run run, int tasks) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        java.lang.management.OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        // process CPU time is only in the com.sun.management version of the bean
+        com.sun.management.OperatingSystemMXBean sunOs = os instanceof com.sun.management.OperatingSystemMXBean
+                ? (com.sun.management.OperatingSystemMXBean) os : null;
+
+        long cpu0 = sunOs != null ? sunOs.getProcessCpuTime() : 0;
+        long main0 = threads.getCurrentThreadCpuTime();
+        long start = System.nanoTime();
+        run.run(tasks);
+        long wall = System.nanoTime() - start;
+        long main = threads.getCurrentThreadCpuTime() - main0;
+        long cpu = sunOs != null ? sunOs.getProcessCpuTime() - cpu0 : -1;
+
+        if (print)
+            System.out.printf("%-28s %6d ms  %,10.0f tasks/s  process CPU %6d ms  main thread CPU %6d ms%n",
+                    name, wall / 1_000_000, tasks * 1e9 / wall, cpu / 1_000_000, main / 1_000_000);
+    }
+}
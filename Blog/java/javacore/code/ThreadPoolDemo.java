@@ -1,5 +1,6 @@
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 class WorkerThread implements Runnable {  
     public WorkerThread() {  
@@ -17,9 +18,16 @@ class WorkerThread implements Runnable {
 }  
 
 public class ThreadPoolDemo {
+    // java ThreadPoolDemo [virtual]
     public static void main(String[] args) {  
-        // creating a pool of 5 threads  
-        ExecutorService executor = Executors.newFixedThreadPool(5);
+        ExecutorService executor;
+        if (args.length > 0 && args[0].equalsIgnoreCase("virtual")) {
+            // one new virtual thread per task (Java 21): the 10 tasks sleep at the same time
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("virtual-", 1).factory());
+        } else {
+            // creating a pool of 5 threads  
+            executor = Executors.newFixedThreadPool(5);
+        }
         for (int i = 0; i < 10; i++) {  
             Runnable worker = new WorkerThread();  
             // calling execute method of ExecutorService  
@@ -35,10 +43,15 @@ public class ThreadPoolDemo {
 
         // the thread pool has to be ended explicitly
         executor.shutdown();  
-        //executor.awaitTermination(5, TimeUnit.SECONDS);
-
-        while (!executor.isTerminated()) {
 
+        // wait for the tasks without spinning: main sleeps until the pool has terminated
+        try {
+            while (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                System.out.println("Still waiting ...");
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
         }
   
         System.out.println("Finished all threads");  
@@ -1,7 +1,68 @@
 import java.net.*;
+import java.util.concurrent.atomic.LongAdder;
 
 class UDPClient1 {
+	// java UDPClient1                                  : answer one message and exit
+	// java UDPClient1 reliable [handler=..] [loss=0.1] : keep answering ReliableUdpClient requests,
+	//                                                    optionally dropping a fraction of them
+	// java UDPClient1 server [handler=..] [workers=n]  : UdpChannelServer; handler is discard, echo
+	//                    [size=bytes]                    or a MessageHandler name; size is the largest message
+	// java UDPClient1 batch                            : UdpChannelServer splitting UdpBatchSender datagrams
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+			try {
+				LongAdder messages = new LongAdder();
+				UdpChannelServer server = new UdpChannelServer(3400,
+					(datagram, from, channel) -> messages.add(UdpBatchSender.split(datagram, message -> {})), 2, 1024, UdpBatchSender.ETHERNET_PAYLOAD);
+				Thread reporter = new Thread(() -> {
+					try {
+						while (true) {
+							Thread.sleep(1000);
+							long datagrams = server.packets();
+							System.out.printf("Received %d messages in %d datagrams (%.1f per datagram)%n", messages.sum(),
+								datagrams, datagrams == 0 ? 0.0 : (double) messages.sum() / datagrams);
+						}
+					}
+					catch (InterruptedException e) {
+					}
+				});
+				reporter.setDaemon(true);
+				reporter.start();
+				server.run();
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("server")) {
+			try {
+				String name = option(args, "handler", "discard");
+				UdpChannelServer.PacketHandler handler = name.equals("discard") ? UdpChannelServer.discard()
+					: name.equals("echo") ? UdpChannelServer.echo()
+					: UdpChannelServer.messages(MessageHandlers.get(name));
+				int workers = Integer.parseInt(option(args, "workers", "2"));
+				int size = Integer.parseInt(option(args, "size", "" + UdpChannelServer.DEFAULT_DATAGRAM));
+				UdpChannelServer server = new UdpChannelServer(3400, handler, workers, 1024, size);
+				server.startReporter();
+				server.run();
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("reliable")) {
+			try {
+				MessageHandler handler = MessageHandlers.get(option(args, "handler", "echo"));
+				double loss = Double.parseDouble(option(args, "loss", "0"));
+				new ReliableUdpServer(3400, handler, 4096, loss).run();
+			}
+			catch (Exception e) {
+				e.printStackTrace();
+			}
+			return;
+		}
 		try {
 			byte[] receivedBuf = new byte[100];
 			DatagramSocket utpSocket = new DatagramSocket(3400);
@@ -10,7 +71,7 @@ class UDPClient1 {
 			
 			utpSocket.receive(receivedPacket);
 			
-			System.out.println("Received : " + new String(receivedBuf));
+			System.out.println("Received : " + new String(receivedBuf, 0, receivedPacket.getLength()));
 			String sentMessage = "I had received your message";
 			byte[] sentBuf = new byte[100];
 			sentBuf = sentMessage.getBytes("ascii");
@@ -24,4 +85,12 @@ class UDPClient1 {
 			e.printStackTrace();
 		}
 	}
+
+	static String option(String[] args, String name, String defaultValue) {
+		for (String a : args) {
+			if (a.startsWith(name + "="))
+				return a.substring(name.length() + 1);
+		}
+		return defaultValue;
+	}
 }
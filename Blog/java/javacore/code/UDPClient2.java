@@ -1,7 +1,22 @@
 import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 class UDPClient2 {
+	// java UDPClient2                               : send one message and wait for the answer
+	// java UDPClient2 reliable [count=n] [window=n] : send n requests with ReliableUdpClient,
+	//                                                 which resends the ones that get lost
+	// java UDPClient2 batch [count=n] [size=n]      : send n small messages packed by UdpBatchSender
 	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+			runBatch(Integer.parseInt(option(args, "count", "1000000")), Integer.parseInt(option(args, "size", "20")));
+			return;
+		}
+		if (args.length > 0 && args[0].equalsIgnoreCase("reliable")) {
+			runReliable(Integer.parseInt(option(args, "count", "1000")), Integer.parseInt(option(args, "window", "32")));
+			return;
+		}
 		try {
 			byte[] sentBuf = new byte[100];
 			String sentMessage = "Hello, there !";
@@ -18,10 +33,61 @@ class UDPClient2 {
 			byte[] receivedBuf = new byte[100];
 			DatagramPacket receivedPacket = new DatagramPacket(receivedBuf, receivedBuf.length);
 			utpSocket.receive(receivedPacket);
-			System.out.println(" Received : " + new String(receivedBuf));
+			System.out.println(" Received : " + new String(receivedBuf, 0, receivedPacket.getLength()));
 		}
 		catch (Exception e) { 
 			e.printStackTrace();
 		}
 	}
+
+	static String option(String[] args, String name, String defaultValue) {
+		for (String a : args) {
+			if (a.startsWith(name + "="))
+				return a.substring(name.length() + 1);
+		}
+		return defaultValue;
+	}
+
+	static void runReliable(int count, int window) {
+		InetSocketAddress server = new InetSocketAddress("localhost", 3400);
+		try (ReliableUdpClient client = new ReliableUdpClient(3500, server, window, 10)) {
+			long start = System.nanoTime();
+			List<CompletableFuture<String>> replies = new ArrayList<>();
+			for (int i = 0; i < count; i++) {
+				replies.add(client.send("Hello, there ! " + i));
+			}
+			int failed = 0;
+			for (CompletableFuture<String> reply : replies) {
+				try {
+					reply.join();
+				}
+				catch (Exception e) {
+					failed++;
+				}
+			}
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			System.out.println(" Received " + (count - failed) + "/" + count + " responses in " + millis + " ms, "
+				+ client.retransmits() + " retransmits, timeout now " + client.currentTimeoutMillis() + " ms");
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	static void runBatch(int count, int size) {
+		String sentMessage = "x".repeat(size);
+		try (UdpBatchSender sender = UdpBatchSender.open(new InetSocketAddress("localhost", 3400), UdpBatchSender.ETHERNET_PAYLOAD, 5)) {
+			long start = System.nanoTime();
+			for (int i = 0; i < count; i++) {
+				sender.send(sentMessage);
+			}
+			sender.flush();
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			System.out.printf(" Sent %d messages in %d datagrams (%.1f per datagram) in %d ms%n",
+				sender.messages(), sender.datagrams(), sender.messagesPerDatagram(), millis);
+		}
+		catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
 }
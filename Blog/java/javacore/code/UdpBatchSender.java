@@ -0,0 +1,128 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Packs many small messages into one datagram, so a high-rate sender makes one
+// send() call per datagram instead of one per message. A datagram goes out when
+// the next message doesn't fit in `maxDatagram` bytes, or `flushMillis` after its
+// first message, whichever comes first. split() unpacks it on the receiving side.
+//
+// Datagram: ([length: 2 bytes][UTF-8 message])...
+public class UdpBatchSender implements Closeable {
+	// 1500-byte Ethernet MTU minus the IPv4 and UDP headers, so datagrams are never fragmented
+	public static final int ETHERNET_PAYLOAD = 1472;
+
+	private final DatagramChannel channel;
+	private final SocketAddress target;
+	private final ByteBuffer datagram;
+	private final long flushNanos;
+	private final ScheduledExecutorService timer;
+	private long firstMessageAt;
+	private long messages;
+	private long datagrams;
+
+	private UdpBatchSender(SocketAddress target, int maxDatagram, long flushMillis) throws IOException {
+		this.channel = DatagramChannel.open();
+		this.target = target;
+		this.datagram = ByteBuffer.allocateDirect(maxDatagram);
+		this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMillis);
+		this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "udp-batch-flush");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	// The flush timer is started only once the sender is fully constructed.
+	public static UdpBatchSender open(SocketAddress target, int maxDatagram, long flushMillis) throws IOException {
+		UdpBatchSender sender = new UdpBatchSender(target, maxDatagram, flushMillis);
+		long period = Math.max(1, flushMillis / 2);
+		sender.timer.scheduleWithFixedDelay(sender::flushIfDue, period, period, TimeUnit.MILLISECONDS);
+		return sender;
+	}
+
+	public synchronized void send(String message) throws IOException {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		int needed = 2 + bytes.length;
+		if (needed > datagram.capacity())
+			throw new IOException("Message too long for one datagram: " + bytes.length + " bytes");
+		if (needed > datagram.remaining())
+			flush();
+		if (datagram.position() == 0)
+			firstMessageAt = System.nanoTime();
+		datagram.putShort((short) bytes.length).put(bytes);
+		messages++;
+	}
+
+	public synchronized void flush() throws IOException {
+		if (datagram.position() == 0)
+			return;
+		datagram.flip();
+		try {
+			channel.send(datagram, target);
+			datagrams++;
+		}
+		finally {
+			// a batch that failed is dropped, like a datagram lost on the way
+			datagram.clear();
+		}
+	}
+
+	private synchronized void flushIfDue() {
+		if (datagram.position() > 0 && System.nanoTime() - firstMessageAt >= flushNanos) {
+			try {
+				flush();
+			}
+			catch (IOException e) {
+				// already dropped by flush(); the timer keeps running for the next batch
+			}
+		}
+	}
+
+	public synchronized long messages() {
+		return messages;
+	}
+
+	public synchronized long datagrams() {
+		return datagrams;
+	}
+
+	public synchronized double messagesPerDatagram() {
+		return datagrams == 0 ? 0 : (double) (messages - pendingMessages()) / datagrams;
+	}
+
+	private int pendingMessages() {
+		int n = 0;
+		for (int i = 0; i < datagram.position(); i += 2 + (datagram.getShort(i) & 0xFFFF))
+			n++;
+		return n;
+	}
+
+	public void close() throws IOException {
+		timer.shutdownNow();
+		flush();
+		channel.close();
+	}
+
+	// Calls onMessage for every message packed in the datagram; returns how many there were.
+	public static int split(ByteBuffer datagram, Consumer<String> onMessage) throws IOException {
+		int count = 0;
+		while (datagram.remaining() >= 2) {
+			int length = datagram.getShort() & 0xFFFF;
+			if (length > datagram.remaining())
+				throw new IOException("Truncated message in datagram");
+			ByteBuffer message = datagram.slice(datagram.position(), length);
+			datagram.position(datagram.position() + length);
+			onMessage.accept(StandardCharsets.UTF_8.decode(message).toString());
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,172 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A long-running UDP server. One thread receives datagrams from a non-blocking
+// DatagramChannel into direct buffers taken from a fixed pool, and a few worker
+// threads handle them and give the buffers back. Nothing is allocated per packet
+// apart from the sender address the JDK returns, and when every buffer is busy
+// the receiver waits, leaving the packets in the socket's receive buffer.
+public class UdpChannelServer {
+	// the largest UDP payload over IPv4 (65535 - 8 bytes UDP header - 20 bytes IP header)
+	public static final int MAX_DATAGRAM = 65507;
+	// enough for the short messages of UDPClient2; a pool of 1024 costs 2 MB instead of 64 MB
+	public static final int DEFAULT_DATAGRAM = 2048;
+
+	// Handles one datagram; `datagram` holds exactly the bytes received and must
+	// not be kept after returning, because the buffer goes back to the pool.
+	@FunctionalInterface
+	public interface PacketHandler {
+		void handle(ByteBuffer datagram, SocketAddress from, DatagramChannel channel) throws IOException;
+	}
+
+	// the buffer and the address it came from travel together, so no wrapper is allocated per packet
+	static class Slot {
+		final ByteBuffer buf;
+		SocketAddress from;
+
+		// one byte more than the largest datagram accepted, so that a datagram that
+		// fills the buffer is known to be too long
+		Slot(int maxDatagram) {
+			buf = ByteBuffer.allocateDirect(Math.min(maxDatagram + 1, MAX_DATAGRAM));
+		}
+	}
+
+	private final int port;
+	private final PacketHandler handler;
+	private final int workers;
+	private final BlockingQueue<Slot> free;
+	private final BlockingQueue<Slot> work;
+	private final AtomicLong packets = new AtomicLong();
+	private final AtomicLong errors = new AtomicLong();
+	private final AtomicLong truncated = new AtomicLong();
+
+	public UdpChannelServer(int port, PacketHandler handler, int workers, int buffers) {
+		this(port, handler, workers, buffers, DEFAULT_DATAGRAM);
+	}
+
+	// maxDatagram: the largest datagram accepted, which sets the size of every pooled buffer
+	public UdpChannelServer(int port, PacketHandler handler, int workers, int buffers, int maxDatagram) {
+		this.port = port;
+		this.handler = handler;
+		this.workers = workers;
+		this.free = new ArrayBlockingQueue<>(buffers);
+		this.work = new ArrayBlockingQueue<>(buffers);
+		for (int i = 0; i < buffers; i++)
+			free.add(new Slot(maxDatagram));
+	}
+
+	public long packets() {
+		return packets.get();
+	}
+
+	public void run() throws IOException, InterruptedException {
+		try (DatagramChannel channel = DatagramChannel.open(); Selector selector = Selector.open()) {
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 4 << 20);
+			channel.bind(new InetSocketAddress(port));
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+
+			for (int i = 0; i < workers; i++) {
+				Thread t = new Thread(() -> work(channel), "udp-worker-" + i);
+				t.setDaemon(true);
+				t.start();
+			}
+			System.out.println("Waiting for datagrams on port " + port);
+
+			while (true) {
+				selector.select();
+				selector.selectedKeys().clear();
+				// read everything the socket has, not just one packet per select()
+				while (true) {
+					Slot slot = free.take();
+					slot.buf.clear();
+					slot.from = channel.receive(slot.buf);
+					if (slot.from == null) {
+						free.add(slot);
+						break;
+					}
+					// receive() drops what doesn't fit, so a full buffer smaller than
+					// MAX_DATAGRAM holds only the start of a datagram that is too long: reject it
+					if (!slot.buf.hasRemaining() && slot.buf.capacity() < MAX_DATAGRAM) {
+						truncated.incrementAndGet();
+						slot.from = null;
+						free.add(slot);
+						continue;
+					}
+					slot.buf.flip();
+					work.add(slot);
+				}
+			}
+		}
+	}
+
+	private void work(DatagramChannel channel) {
+		while (true) {
+			Slot slot;
+			try {
+				slot = work.take();
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+			try {
+				handler.handle(slot.buf, slot.from, channel);
+				packets.incrementAndGet();
+			}
+			catch (IOException | RuntimeException e) {
+				errors.incrementAndGet();
+			}
+			finally {
+				slot.from = null;
+				free.add(slot);
+			}
+		}
+	}
+
+	public void startReporter() {
+		Thread t = new Thread(() -> {
+			long last = 0;
+			while (true) {
+				try {
+					Thread.sleep(1000);
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				long now = packets.get();
+				System.out.println((now - last) + " packets/s, total=" + now + " errors=" + errors.get() + " truncated=" + truncated.get());
+				last = now;
+			}
+		}, "udp-stats");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	// Sends the datagram back as it came
+	public static PacketHandler echo() {
+		return (datagram, from, channel) -> channel.send(datagram, from);
+	}
+
+	// Only counts the datagrams
+	public static PacketHandler discard() {
+		return (datagram, from, channel) -> {};
+	}
+
+	// Decodes the datagram as UTF-8 text and sends back the handler's reply
+	public static PacketHandler messages(MessageHandler handler) {
+		return (datagram, from, channel) -> {
+			String receivedMessage = StandardCharsets.UTF_8.decode(datagram).toString();
+			channel.send(StandardCharsets.UTF_8.encode(handler.handle(receivedMessage)), from);
+		};
+	}
+}